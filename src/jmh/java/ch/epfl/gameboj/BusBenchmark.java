@@ -0,0 +1,72 @@
+package ch.epfl.gameboj;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Mesure le temps d'une lecture et d'une écriture sur le bus d'un Game Boy
+ * réel (Tetris), à des adresses pseudo-aléatoires réparties entre la
+ * cartouche, la mémoire vive, la mémoire vidéo, les registres et la mémoire
+ * haute
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusBenchmark {
+
+    private static final String ROM = "Tetris (JUE) (V1.1) [!].gb";
+    private static final int ADDRESSES = 1024;
+    private static final int MASK = ADDRESSES - 1;
+
+    private Bus bus;
+    private final int[] readAddresses = new int[ADDRESSES];
+    private final int[] writeAddresses = new int[ADDRESSES];
+    private int i;
+
+    @Setup
+    public void setup() throws IOException {
+
+        bus = new GameBoy(Cartridge.ofFile(new File(ROM))).bus();
+
+        // Les écritures sont limitées aux mémoires vives, pour ne modifier
+        // ni le contrôleur de la cartouche ni les registres
+        Random random = new Random(2018);
+        for (int j = 0; j < ADDRESSES; ++j) {
+            readAddresses[j] = random.nextInt(0x10000);
+            writeAddresses[j] = random.nextBoolean()
+                    ? AddressMap.WORK_RAM_START
+                            + random.nextInt(AddressMap.WORK_RAM_SIZE)
+                    : AddressMap.HIGH_RAM_START
+                            + random.nextInt(AddressMap.HIGH_RAM_SIZE);
+        }
+    }
+
+    @Benchmark
+    public int read() {
+        return bus.read(readAddresses[i++ & MASK]);
+    }
+
+    @Benchmark
+    public void write() {
+        int j = i++ & MASK;
+        bus.write(writeAddresses[j], j & 0xFF);
+    }
+}
@@ -0,0 +1,63 @@
+package ch.epfl.gameboj;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Mesure le nombre d'images simulées par seconde par un Game Boy complet,
+ * sans interface graphique, pour chacun des jeux fournis ; le jeu avance
+ * d'une image à chaque opération, après avoir dépassé l'écran de démarrage,
+ * avec et sans traduction du code en blocs de base
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameBoyBenchmark {
+
+    private static final int SKIPPED_FRAMES = 600;
+
+    @Param({ "Tetris (JUE) (V1.1) [!].gb",
+            "Super Mario Land (JUE) (V1.1) [!].gb" })
+    public String rom;
+
+    @Param({ "false", "true" })
+    public boolean translated;
+
+    private GameBoy gameBoy;
+    private long frame;
+
+    @Setup
+    public void setup() throws IOException {
+
+        gameBoy = new GameBoy(Cartridge.ofFile(new File(rom)));
+        gameBoy.setTranslation(translated);
+        while (frame < SKIPPED_FRAMES)
+            gameBoy.runUntil(++frame * LcdController.FRAME_CYCLES);
+    }
+
+    @Benchmark
+    public long runFrame() {
+
+        gameBoy.runUntil(++frame * LcdController.FRAME_CYCLES);
+        return gameBoy.cycles();
+    }
+}
@@ -0,0 +1,81 @@
+package ch.epfl.gameboj.bits;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mesure le temps des opérations sur des vecteurs aléatoires de 256 bits, la
+ * taille d'une ligne de l'image de fond
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitVectorBenchmark {
+
+    private static final int SIZE = 256;
+    private static final int SHIFT = 13;
+    private static final int EXTRACT_INDEX = -75;
+    private static final int EXTRACT_SIZE = 160;
+
+    private BitVector a, b;
+
+    @Setup
+    public void setup() {
+
+        Random random = new Random(2018);
+        a = randomVector(random);
+        b = randomVector(random);
+    }
+
+    private static BitVector randomVector(Random random) {
+
+        BitVector.Builder builder = new BitVector.Builder(SIZE);
+        for (int i = 0; i < SIZE / Byte.SIZE; ++i)
+            builder.setByte(i, random.nextInt(0x100));
+        return builder.build();
+    }
+
+    @Benchmark
+    public BitVector not() {
+        return a.not();
+    }
+
+    @Benchmark
+    public BitVector and() {
+        return a.and(b);
+    }
+
+    @Benchmark
+    public BitVector or() {
+        return a.or(b);
+    }
+
+    @Benchmark
+    public BitVector shift() {
+        return a.shift(SHIFT);
+    }
+
+    @Benchmark
+    public BitVector extractWrapped() {
+        return a.extractWrapped(EXTRACT_INDEX, EXTRACT_SIZE);
+    }
+
+    @Benchmark
+    public BitVector extractZeroExtended() {
+        return a.extractZeroExtended(EXTRACT_INDEX, EXTRACT_SIZE);
+    }
+}
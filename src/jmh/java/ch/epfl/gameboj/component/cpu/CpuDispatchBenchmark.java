@@ -0,0 +1,99 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+/**
+ * Mesure le temps nécessaire au processeur seul, sur un bus ne contenant que
+ * de la mémoire vive, pour simuler l'équivalent d'une image (17556 cycles)
+ * d'un programme synthétique bouclant indéfiniment :
+ * <ul>
+ * <li>mixed : une boucle mêlant chargements, opérations arithmétiques et
+ * logiques, accès mémoire, instructions préfixées et saut conditionnel,</li>
+ * <li>calls : des appels de sous-programme empilant et dépilant un registre,
+ * comme le programme Fibo récursif.</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CpuDispatchBenchmark {
+
+    private static final byte[] MIXED = new byte[] {
+            (byte) 0x21, (byte) 0x00, (byte) 0xC0, // LD HL, 0xC000
+            (byte) 0x06, (byte) 0x03,              // LD B, 3
+            // loop:
+            (byte) 0x3C,                           // INC A
+            (byte) 0x80,                           // ADD A, B
+            (byte) 0x77,                           // LD (HL), A
+            (byte) 0xA9,                           // XOR A, C
+            (byte) 0x4F,                           // LD C, A
+            (byte) 0xCB, (byte) 0x11,              // RL C
+            (byte) 0x1A,                           // LD A, (DE)
+            (byte) 0xFE, (byte) 0x10,              // CP A, 0x10
+            (byte) 0x05,                           // DEC B
+            (byte) 0x20, (byte) 0xF3,              // JR NZ, loop
+            (byte) 0x06, (byte) 0x03,              // LD B, 3
+            (byte) 0x18, (byte) 0xEF,              // JR loop
+    };
+
+    private static final byte[] CALLS = new byte[] {
+            (byte) 0x31, (byte) 0xFE, (byte) 0xDF, // LD SP, 0xDFFE
+            // loop:
+            (byte) 0xCD, (byte) 0x08, (byte) 0x00, // CALL f
+            (byte) 0x18, (byte) 0xFB,              // JR loop
+            // f:
+            (byte) 0xC5,                           // PUSH BC
+            (byte) 0x03,                           // INC BC
+            (byte) 0xC1,                           // POP BC
+            (byte) 0xC9,                           // RET
+    };
+
+    @Param({ "mixed", "calls" })
+    public String program;
+
+    private Cpu cpu;
+    private long cycle;
+
+    @Setup
+    public void setup() {
+
+        Bus bus = new Bus();
+        Ram ram = new Ram(0x10000);
+        new RamController(ram, 0).attachTo(bus);
+        byte[] code = program.equals("mixed") ? MIXED : CALLS;
+        for (int i = 0; i < code.length; ++i)
+            ram.write(i, Byte.toUnsignedInt(code[i]));
+
+        cpu = new Cpu();
+        cpu.attachTo(bus);
+    }
+
+    @Benchmark
+    public long runFrame() {
+
+        long end = cycle + LcdController.FRAME_CYCLES;
+        while (cycle < end)
+            cycle += cpu.step(cycle, end - cycle);
+        return cycle;
+    }
+}
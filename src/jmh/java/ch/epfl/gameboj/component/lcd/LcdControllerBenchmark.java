@@ -0,0 +1,67 @@
+package ch.epfl.gameboj.component.lcd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Mesure le temps nécessaire au contrôleur LCD seul pour simuler une image
+ * de Super Mario Land (arrière-plan, fenêtre et sprites), figée après 2000
+ * images de jeu ; le processeur n'est pas simulé. Comme computeLine est
+ * privée, son coût est la différence entre les images dessinées (drawn) et
+ * les images sautées, dont seule la temporisation est simulée
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LcdControllerBenchmark {
+
+    private static final String ROM = "Super Mario Land (JUE) (V1.1) [!].gb";
+    private static final int SKIPPED_FRAMES = 2000;
+
+    @Param({ "true", "false" })
+    public boolean drawn;
+
+    private LcdController lcd;
+    private long cycle;
+
+    @Setup
+    public void setup() throws IOException {
+
+        GameBoy gameBoy = new GameBoy(Cartridge.ofFile(new File(ROM)));
+        gameBoy.runUntil(SKIPPED_FRAMES * LcdController.FRAME_CYCLES);
+        cycle = gameBoy.cycles();
+
+        lcd = gameBoy.lcdController();
+        lcd.setFrameSkip(drawn ? null : () -> true);
+    }
+
+    @Benchmark
+    public long runFrame() {
+
+        long end = cycle + LcdController.FRAME_CYCLES;
+        while (cycle < end) {
+            lcd.cycle(cycle);
+            cycle = lcd.nextEventCycle(cycle);
+        }
+        return cycle;
+    }
+}
@@ -0,0 +1,89 @@
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mesure le temps des opérations de composition sur une ligne de 160 pixels
+ * aléatoires, d'une part pour LcdImageLine, immuable, et d'autre part pour
+ * ScanlineBuffer, modifiée sur place, qu'utilise le contrôleur LCD
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LcdImageLineBenchmark {
+
+    private static final int PALETTE = 0b00_01_10_11;
+    private static final int JOIN_INDEX = 53;
+
+    private LcdImageLine line, upper;
+    private final ScanlineBuffer buffer = new ScanlineBuffer(LcdController.LCD_WIDTH);
+    private final ScanlineBuffer upperBuffer = new ScanlineBuffer(LcdController.LCD_WIDTH);
+
+    @Setup
+    public void setup() {
+
+        Random random = new Random(2018);
+        line = randomLine(random, buffer);
+        upper = randomLine(random, upperBuffer);
+    }
+
+    private static LcdImageLine randomLine(Random random, ScanlineBuffer b) {
+
+        LcdImageLine.Builder builder = new LcdImageLine.Builder(LcdController.LCD_WIDTH);
+        for (int i = 0; i < LcdController.LCD_WIDTH / Byte.SIZE; ++i) {
+            int lsb = random.nextInt(0x100), msb = random.nextInt(0x100);
+            builder.setBytes(i, lsb, msb);
+            b.setBytes(i, lsb, msb);
+        }
+        b.computeOpacity();
+        return builder.build();
+    }
+
+    @Benchmark
+    public LcdImageLine mapColors() {
+        return line.mapColors(PALETTE);
+    }
+
+    @Benchmark
+    public LcdImageLine below() {
+        return line.below(upper);
+    }
+
+    @Benchmark
+    public LcdImageLine join() {
+        return line.join(upper, JOIN_INDEX);
+    }
+
+    @Benchmark
+    public ScanlineBuffer bufferMapColors() {
+        buffer.mapColors(PALETTE);
+        return buffer;
+    }
+
+    @Benchmark
+    public ScanlineBuffer bufferBelow() {
+        buffer.below(upperBuffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public ScanlineBuffer bufferJoin() {
+        buffer.join(upperBuffer, JOIN_INDEX);
+        return buffer;
+    }
+}
@@ -1,74 +1,210 @@
 package ch.epfl.gameboj;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
 
 import ch.epfl.gameboj.component.Component;
 
 public final class Bus {
-    
-    private final ArrayList<Component> components;
-    
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int PAGE_COUNT = 0x10000 >>> PAGE_BITS;
+
+    // Marque, dans la table d'une page, les adresses couvertes par plusieurs
+    // composants, qui sont alors interrogés dans leur ordre d'attachement
+    private static final Component OVERLAP = new Component() {
+        @Override
+        public int read(int address) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void write(int address, int data) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    // Composants de chaque page, dans leur ordre d'attachement ; pour chaque
+    // page, son unique composant s'il est seul, ou sinon la table donnant le
+    // composant de chacune de ses adresses (null si aucun, OVERLAP si
+    // plusieurs)
+    private final Component[][] pages;
+    private final Component[] pageOwners;
+    private final Component[][] addressOwners;
+    private PerformanceCounters counters;
+
     /**
-     * Initialise la liste des composants
+     * Initialise la table des pages, chaque page
+     * de 256 octets ne contenant encore aucun composant
      */
     public Bus() {
-        
-        components = new ArrayList<Component>();
+
+        pages = new Component[PAGE_COUNT][];
+        Arrays.fill(pages, new Component[0]);
+        pageOwners = new Component[PAGE_COUNT];
+        addressOwners = new Component[PAGE_COUNT][];
     }
-    
+
     /**
-     * Attache le composant donné au bus, 
-     * ou lève l'exception NullPointerException 
-     * si le composant vaut null
+     * Attache le composant donné au bus, en l'ajoutant
+     * à chacune des pages couvertes par ses plages
+     * d'adresses, ou lève l'exception NullPointerException
+     * si le composant vaut null ; lève l'exception
+     * IllegalArgumentException si ses plages d'adresses
+     * ne sont pas valides
      * @param le composant
      * @throws NullPointerException
+     * @throws IllegalArgumentException
      */
     public void attach(Component component) {
-        
-        components.add(Objects.requireNonNull(component));
+
+        int[] ranges = Objects.requireNonNull(component).addressRanges();
+        Preconditions.checkArgument(ranges.length % 2 == 0);
+
+        for (int i = 0; i < ranges.length; i += 2) {
+
+            int start = ranges[i], end = ranges[i + 1];
+            Preconditions.checkBits16(start);
+            Preconditions.checkBits16(end - 1);
+            Preconditions.checkArgument(start < end);
+
+            for (int p = start >>> PAGE_BITS; p <= (end - 1) >>> PAGE_BITS; p++) {
+
+                if (!Arrays.asList(pages[p]).contains(component)) {
+                    pages[p] = Arrays.copyOf(pages[p], pages[p].length + 1);
+                    pages[p][pages[p].length - 1] = component;
+                    updateOwners(p);
+                }
+            }
+        }
+    }
+
+    // Recalcule le ou les composants propriétaires des adresses de la page
+    // donnée, à partir des plages d'adresses de ses composants
+    private void updateOwners(int p) {
+
+        Component[] components = pages[p];
+        if (components.length == 1) {
+            pageOwners[p] = components[0];
+            addressOwners[p] = null;
+            return;
+        }
+
+        Component[] owners = new Component[PAGE_SIZE];
+        int pageStart = p << PAGE_BITS;
+        for (Component c : components) {
+
+            int[] ranges = c.addressRanges();
+            for (int i = 0; i < ranges.length; i += 2) {
+
+                int start = Math.max(ranges[i], pageStart);
+                int end = Math.min(ranges[i + 1], pageStart + PAGE_SIZE);
+                for (int a = start; a < end; a++) {
+                    int o = a & PAGE_MASK;
+                    owners[o] = owners[o] == null || owners[o] == c ? c
+                            : OVERLAP;
+                }
+            }
+        }
+        pageOwners[p] = null;
+        addressOwners[p] = owners;
+    }
+
+    // Composant propriétaire de l'adresse donnée, OVERLAP si plusieurs
+    // composants la couvrent, ou null si aucun
+    private Component owner(int address) {
+
+        int p = address >>> PAGE_BITS;
+        Component owner = pageOwners[p];
+        if (owner == null && addressOwners[p] != null) {
+            owner = addressOwners[p][address & PAGE_MASK];
+        }
+        return owner;
     }
-    
+
+    /**
+     * Définit les compteurs de performance auxquels chaque lecture et
+     * écriture est signalée, ou aucun s'ils sont nuls
+     * 
+     * @param counters
+     *            les compteurs, ou null
+     */
+    public void setCounters(PerformanceCounters counters) {
+
+        this.counters = counters;
+    }
+
     /**
-     * Retourne la valeur stockée à 
-     * l'adresse donnée si au moins un 
-     * des composants attaché au bus possède 
-     * une valeur à cette adresse, ou FF16 
-     * sinon (!) ; lève l'exception 
-     * IllegalArgumentException si l'adresse 
-     * n'est pas une valeur 16 bits
+     * Retourne la valeur stockée à
+     * l'adresse donnée si au moins un
+     * des composants attaché au bus possède
+     * une valeur à cette adresse, ou FF16
+     * sinon (!) ; lève l'exception
+     * IllegalArgumentException si l'adresse
+     * n'est pas une valeur 16 bits.
+     * Seul le composant dont une plage contient
+     * l'adresse est interrogé ; si les plages de
+     * plusieurs composants la contiennent, ceux-ci
+     * sont interrogés dans leur ordre d'attachement,
+     * de sorte qu'un composant recouvrant la plage
+     * d'un autre garde la priorité qu'il avait au
+     * moment de l'attachement
      * @param l'adresse
      * @throws IllegalArgumentException
      */
     public int read(int address) {
-        
+
         Preconditions.checkBits16(address);
-        for (Component c: components) {
-            
-            if (c.read(address) != Component.NO_DATA) {
-                return c.read(address);
+        if (counters != null) {
+            counters.busRead(address);
+        }
+
+        Component owner = owner(address);
+        if (owner != OVERLAP) {
+            int value = owner == null ? Component.NO_DATA : owner.read(address);
+            return value == Component.NO_DATA ? 0xFF : value;
+        }
+        for (Component c: pages[address >>> PAGE_BITS]) {
+
+            int value = c.read(address);
+            if (value != Component.NO_DATA) {
+                return value;
             }
         }
         return 0xFF;
     }
-    
+
     /**
-     * Ecrit la valeur à l'adresse donnée 
-     * dans tous les composants connectés
-     * au bus ; lève l'exception 
-     * IllegalArgumentException si 
-     * l'adresse n'est pas une valeur 
-     * 16 bits ou si la donnée n'est 
+     * Ecrit la valeur à l'adresse donnée
+     * dans le composant dont une plage
+     * d'adresses la contient, ou dans tous
+     * ceux de sa page si plusieurs plages la
+     * contiennent ; lève l'exception
+     * IllegalArgumentException si
+     * l'adresse n'est pas une valeur
+     * 16 bits ou si la donnée n'est
      * pas une valeur 8 bits
      * @param l'adresse et la donnée
      * @throws IllegalArgumentException
      */
     public void write(int address, int data) {
-        
+
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
-                
-        for (Component c: components) {
-            
+        if (counters != null) {
+            counters.busWritten(address);
+        }
+
+        Component owner = owner(address);
+        if (owner != OVERLAP) {
+            if (owner != null) {
+                owner.write(address, data);
+            }
+            return;
+        }
+        for (Component c: pages[address >>> PAGE_BITS]) {
+
             c.write(address, data);
         }
     }
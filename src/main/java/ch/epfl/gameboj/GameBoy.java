@@ -1,8 +1,12 @@
 package ch.epfl.gameboj;
 
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.zip.CRC32;
 
 import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.Timer;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import ch.epfl.gameboj.component.cpu.Cpu;
@@ -11,17 +15,26 @@ import ch.epfl.gameboj.component.memory.BootRomController;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.RamController;
 
-public final class GameBoy {
+public final class GameBoy implements Stateful {
 
     public static final long CYCLES_PER_SECOND = 1 << 20;
     public static final double CYCLES_PER_NANOSECOND = CYCLES_PER_SECOND
             / 1000000000.0;
 
+    // Identifie le format des états, à changer à chaque modification de
+    // celui-ci
+    private static final int STATE_VERSION = 2;
+    private static final int STATE_HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+
     private final Bus bus;
     private final Cpu cpu;
     private final Timer timer;
     private final LcdController lcdController;
     private final Joypad joypad;
+    private final Cartridge cartridge;
+    private final Ram workRam;
+    private final BootRomController bootRomController;
+    private PerformanceCounters counters;
     long currentCycle;
 
     /**
@@ -33,20 +46,21 @@ public final class GameBoy {
     public GameBoy(Cartridge cartridge) {
 
         bus = new Bus();
-        Ram ram = new Ram(AddressMap.WORK_RAM_SIZE);
+        this.cartridge = cartridge;
+        workRam = new Ram(AddressMap.WORK_RAM_SIZE);
 
-        RamController controller = new RamController(ram,
+        RamController controller = new RamController(workRam,
                 AddressMap.WORK_RAM_START);
         controller.attachTo(bus);
 
-        RamController controllerCopy = new RamController(ram,
+        RamController controllerCopy = new RamController(workRam,
                 AddressMap.ECHO_RAM_START, AddressMap.ECHO_RAM_END);
         controllerCopy.attachTo(bus);
 
         cpu = new Cpu();
         cpu.attachTo(bus);
 
-        BootRomController bootRomController = new BootRomController(
+        bootRomController = new BootRomController(
                 Objects.requireNonNull(cartridge));
         bootRomController.attachTo(bus);
 
@@ -72,6 +86,15 @@ public final class GameBoy {
         return bus;
     }
 
+    /**
+     * Retourne la cartouche de la GameBoy
+     * 
+     * @return cartridge
+     */
+    public Cartridge cartridge() {
+        return cartridge;
+    }
+
     /**
      * Retourne le processeur de la GameBoy
      * 
@@ -111,7 +134,10 @@ public final class GameBoy {
     /**
      * Simule le fonctionnement du GameBoy jusqu'au cycle donné moins 1, ou lève
      * l'exception IllegalArgumentException si un nombre (strictement) supérieur
-     * de cycles a déjà été simulé
+     * de cycles a déjà été simulé. Le processeur exécute d'un coup toutes ses
+     * instructions jusqu'au prochain événement du minuteur ou du contrôleur
+     * LCD, les cycles durant lesquels aucun composant n'a d'opération à
+     * exécuter étant ainsi sautés
      * 
      * @param cycle
      */
@@ -122,8 +148,15 @@ public final class GameBoy {
         while (currentCycle < cycle) {
             timer.cycle(currentCycle);
             lcdController.cycle(currentCycle);
-            cpu.cycle(currentCycle);
-            currentCycle++;
+
+            long limit = Math.min(cycle,
+                    Math.min(timer.nextEventCycle(currentCycle),
+                            lcdController.nextEventCycle(currentCycle)));
+            currentCycle += cpu.step(currentCycle, limit - currentCycle);
+        }
+
+        if (cycle > 0) {
+            timer.cycle(cycle - 1);
         }
     }
 
@@ -136,4 +169,194 @@ public final class GameBoy {
         return currentCycle;
     }
 
+    /**
+     * Installe les compteurs de performance donnés dans le bus, le processeur
+     * et le contrôleur LCD, ou les désactive s'ils sont nuls ; désactivés, ils
+     * ne coûtent qu'un test par accès au bus et par instruction
+     * 
+     * @param counters
+     *            les compteurs, ou null
+     */
+    public void setCounters(PerformanceCounters counters) {
+
+        this.counters = counters;
+        bus.setCounters(counters);
+        cpu.setCounters(counters);
+        lcdController.setCounters(counters);
+    }
+
+    /**
+     * Retourne les compteurs de performance installés
+     * 
+     * @return les compteurs, ou null s'ils sont désactivés
+     */
+    public PerformanceCounters counters() {
+        return counters;
+    }
+
+    /**
+     * Installe le profileur donné dans le processeur, ou le désactive s'il
+     * est nul ; désactivé, il ne coûte qu'un test par instruction. Le
+     * profileur attribue le code exécuté à la banque de la cartouche visible
+     * à son adresse, ou à la mémoire de démarrage tant qu'elle est active
+     * 
+     * @param profiler
+     *            le profileur, ou null
+     */
+    public void setProfiler(Profiler profiler) {
+
+        if (profiler != null) {
+            profiler.setRomBank(this::codeBank);
+        }
+        cpu.setProfiler(profiler);
+    }
+
+    /**
+     * Active ou désactive la traduction du code en blocs de base par le
+     * processeur, qui évite de relire sur le bus les instructions déjà
+     * exécutées sans changer le résultat de la simulation ; le code de la
+     * mémoire de démarrage n'est jamais traduit, et les blocs de la mémoire
+     * morte sont partagés entre tous les Game Boy dont les cartouches ont la
+     * même mémoire morte
+     * 
+     * @param enabled
+     *            vrai pour activer la traduction
+     */
+    public void setTranslation(boolean enabled) {
+
+        cpu.setTranslation(!enabled ? null : this::codeBank,
+                cartridge.rom());
+    }
+
+    // Banque de la cartouche visible à l'adresse donnée, inférieure à 800016,
+    // ou -1 si la mémoire de démarrage la recouvre
+    private int codeBank(int address) {
+
+        return address < AddressMap.BOOT_ROM_END
+                && !bootRomController.bootRomDisabled() ? -1
+                        : cartridge.romBank(address);
+    }
+
+    /**
+     * Retourne un Game Boy indépendant de celui-ci et dans le même état. Les
+     * mémoires vives (de travail, vidéo, haute et de la cartouche) et les
+     * images du contrôleur LCD sont partagées par pages et par lignes, chaque
+     * page ou ligne n'étant copiée que lors de la première écriture de l'un
+     * des deux Game Boy dans celle-ci, et la mémoire morte de la cartouche
+     * l'est entièrement ; le cache des tuiles du contrôleur LCD est invalidé
+     * plutôt que copié. Hormis la construction de composants vides, le coût
+     * d'une copie est ainsi proportionnel au nombre de pages et de lignes
+     * modifiées ensuite. Le tableau de pixels et l'action de fin d'image du
+     * contrôleur LCD, ainsi que les compteurs de performance, le profileur et
+     * la traduction du code, ne sont pas copiés
+     * 
+     * Ce Game Boy ne doit pas être simulé par un autre fil pendant l'appel
+     * 
+     * @return la copie du Game Boy
+     */
+    public GameBoy fork() {
+
+        GameBoy copy = new GameBoy(cartridge.fork());
+        copy.currentCycle = currentCycle;
+        copy.cpu.copyStateFrom(cpu);
+        copy.workRam.copyStateFrom(workRam);
+        copy.bootRomController.copyStateFrom(bootRomController);
+        copy.timer.copyStateFrom(timer);
+        copy.lcdController.copyStateFrom(lcdController);
+        copy.joypad.copyStateFrom(joypad);
+        return copy;
+    }
+
+    /**
+     * Retourne la taille, en octets, d'un état du Game Boy, qui ne dépend que
+     * de sa cartouche ; un tampon de cette taille peut être réutilisé pour
+     * tous les états
+     * 
+     * @return la taille d'un état
+     */
+    @Override
+    public int stateSize() {
+
+        return STATE_HEADER_SIZE + cpu.stateSize() + workRam.stateSize()
+                + bootRomController.stateSize() + timer.stateSize()
+                + lcdController.stateSize() + joypad.stateSize();
+    }
+
+    /**
+     * Écrit l'état complet du Game Boy (processeur, mémoires, cartouche,
+     * minuteur, contrôleur LCD et clavier) dans le tampon donné, à partir de
+     * sa position courante
+     * 
+     * @param buffer
+     * @throws java.nio.BufferOverflowException
+     *             si le tampon n'a pas la place pour stateSize() octets
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+
+        buffer.putInt(STATE_VERSION).putInt(stateSize()).putLong(currentCycle);
+        cpu.saveState(buffer);
+        workRam.saveState(buffer);
+        bootRomController.saveState(buffer);
+        timer.saveState(buffer);
+        lcdController.saveState(buffer);
+        joypad.saveState(buffer);
+    }
+
+    /**
+     * Retourne la somme de contrôle (CRC-32) de l'état simulé du Game Boy,
+     * c-à-d de son état sans les images du contrôleur LCD ; elle ne dépend
+     * donc pas des images dessinées ou sautées, et permet de comparer deux
+     * simulations p.ex. lorsque l'une d'elles rejoue un film sans les dessiner
+     * 
+     * @return la somme de contrôle de l'état simulé
+     */
+    public long emulatedStateChecksum() {
+
+        ByteBuffer buffer = ByteBuffer.allocate(stateSize());
+        buffer.putLong(currentCycle);
+        cpu.saveState(buffer);
+        workRam.saveState(buffer);
+        bootRomController.saveState(buffer);
+        timer.saveState(buffer);
+        lcdController.saveEmulatedState(buffer);
+        joypad.saveState(buffer);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        return crc.getValue();
+    }
+
+    /**
+     * Remplace l'état du Game Boy par celui lu dans le tampon donné, à partir
+     * de sa position courante, tel qu'il a été écrit par saveState sur un
+     * Game Boy ayant la même cartouche ; l'état n'est pas modifié si le tampon
+     * est invalide
+     * 
+     * @param buffer
+     * @throws IllegalArgumentException
+     *             si le tampon ne contient pas un état de même format et de
+     *             même taille
+     * @throws BufferUnderflowException
+     *             si le tampon ne contient pas assez d'octets
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+
+        int size = stateSize();
+        if (buffer.remaining() < size) {
+            throw new BufferUnderflowException();
+        }
+        Preconditions.checkArgument(buffer.getInt(buffer.position()) == STATE_VERSION
+                && buffer.getInt(buffer.position() + Integer.BYTES) == size);
+
+        buffer.position(buffer.position() + 2 * Integer.BYTES);
+        currentCycle = buffer.getLong();
+        cpu.loadState(buffer);
+        workRam.loadState(buffer);
+        bootRomController.loadState(buffer);
+        timer.loadState(buffer);
+        lcdController.loadState(buffer);
+        joypad.loadState(buffer);
+    }
 }
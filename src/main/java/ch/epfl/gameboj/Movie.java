@@ -0,0 +1,343 @@
+package ch.epfl.gameboj;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Objects;
+
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Film immuable des touches pressées et relâchées durant une simulation,
+ * chaque événement étant associé au cycle exact auquel il a eu lieu, ce qui
+ * permet de rejouer la simulation à l'identique
+ *
+ * Un film commence soit à l'allumage du Game Boy, soit à un état enregistré
+ * au début de l'enregistrement, et se termine au cycle auquel l'enregistrement
+ * a été arrêté
+ */
+public final class Movie {
+
+    private static final int MAGIC = 0x474A4D56; // "GJMV"
+    private static final int VERSION = 1;
+    private static final int KEY_MASK = 0b111;
+    private static final int PRESSED = 0b1000;
+    private static final Joypad.Key[] KEYS = Joypad.Key.values();
+
+    private final byte[] initialState;
+    private final long[] cycles;
+    private final byte[] events;
+    private final long startCycle, endCycle;
+
+    private Movie(byte[] initialState, long[] cycles, byte[] events,
+            long startCycle, long endCycle) {
+
+        this.initialState = initialState;
+        this.startCycle = startCycle;
+        this.cycles = cycles;
+        this.events = events;
+        this.endCycle = endCycle;
+    }
+
+    /**
+     * @return le nombre d'événements du film
+     */
+    public int size() {
+        return cycles.length;
+    }
+
+    /**
+     * @return le cycle auquel le film commence
+     */
+    public long startCycle() {
+        return startCycle;
+    }
+
+    /**
+     * @return le cycle auquel le film se termine
+     */
+    public long endCycle() {
+        return endCycle;
+    }
+
+    /**
+     * Rejoue le film sur un nouveau Game Boy doté de la cartouche donnée, le
+     * plus vite possible, et retourne ce Game Boy une fois le cycle de fin du
+     * film atteint. Les images ne sont pas dessinées et le code est traduit,
+     * ce qui ne change pas l'état simulé (voir
+     * GameBoy.emulatedStateChecksum) ; le Game Boy retourné continue de
+     * sauter les images tant que sa politique de saut n'est pas changée
+     *
+     * @param cartridge
+     * @return le Game Boy dans l'état de fin du film
+     * @throws IllegalArgumentException
+     *             si l'état initial du film n'est pas compatible avec la
+     *             cartouche
+     */
+    public GameBoy replay(Cartridge cartridge) {
+
+        GameBoy gameBoy = new GameBoy(cartridge);
+        if (initialState != null) {
+            gameBoy.loadState(ByteBuffer.wrap(initialState));
+        }
+        gameBoy.lcdController().setFrameSkip(() -> true);
+        gameBoy.setTranslation(true);
+
+        for (int i = 0; i < cycles.length; ++i) {
+            gameBoy.runUntil(cycles[i]);
+            apply(events[i], gameBoy.joypad());
+        }
+        gameBoy.runUntil(endCycle);
+        return gameBoy;
+    }
+
+    /**
+     * Écrit le film dans le flot donné, sans le fermer
+     *
+     * @param out
+     * @throws IOException
+     *             en cas d'erreur d'entrée-sortie
+     */
+    public void write(OutputStream out) throws IOException {
+
+        DataOutputStream s = new DataOutputStream(out);
+        s.writeInt(MAGIC);
+        s.writeInt(VERSION);
+        s.writeLong(startCycle);
+        s.writeLong(endCycle);
+
+        if (initialState == null) {
+            s.writeInt(-1);
+        } else {
+            s.writeInt(initialState.length);
+            s.write(initialState);
+        }
+
+        // Les cycles, croissants, sont codés par leur différence avec le
+        // précédent, sur 7 bits par octet
+        s.writeInt(cycles.length);
+        long previous = startCycle;
+        for (int i = 0; i < cycles.length; ++i) {
+            writeVarLong(s, cycles[i] - previous);
+            s.writeByte(events[i]);
+            previous = cycles[i];
+        }
+        s.flush();
+    }
+
+    /**
+     * Écrit le film dans le fichier donné
+     *
+     * @param file
+     * @throws IOException
+     *             en cas d'erreur d'entrée-sortie
+     */
+    public void writeFile(File file) throws IOException {
+
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            write(out);
+        }
+    }
+
+    /**
+     * Lit un film dans le flot donné, sans le fermer
+     *
+     * @param in
+     * @return le film lu
+     * @throws IOException
+     *             en cas d'erreur d'entrée-sortie, y compris si le flot se
+     *             termine prématurément
+     * @throws IllegalArgumentException
+     *             si le flot ne contient pas un film valide
+     */
+    public static Movie read(InputStream in) throws IOException {
+
+        DataInputStream s = new DataInputStream(in);
+        Preconditions.checkArgument(
+                s.readInt() == MAGIC && s.readInt() == VERSION);
+        long startCycle = s.readLong();
+        long endCycle = s.readLong();
+        Preconditions.checkArgument(0 <= startCycle && startCycle <= endCycle);
+
+        int stateLength = s.readInt();
+        Preconditions.checkArgument(stateLength >= -1);
+        byte[] initialState = null;
+        if (stateLength >= 0) {
+            initialState = new byte[stateLength];
+            s.readFully(initialState);
+        }
+
+        int count = s.readInt();
+        Preconditions.checkArgument(count >= 0);
+        long[] cycles = new long[count];
+        byte[] events = new byte[count];
+        long previous = startCycle;
+        for (int i = 0; i < count; ++i) {
+            cycles[i] = previous + readVarLong(s);
+            events[i] = s.readByte();
+            Preconditions.checkArgument(
+                    (events[i] & ~(KEY_MASK | PRESSED)) == 0);
+            previous = cycles[i];
+        }
+        Preconditions.checkArgument(count == 0 || cycles[count - 1] <= endCycle);
+        Preconditions.checkArgument((stateLength < 0) == (startCycle == 0));
+
+        return new Movie(initialState, cycles, events, startCycle, endCycle);
+    }
+
+    /**
+     * Lit un film dans le fichier donné
+     *
+     * @param file
+     * @return le film lu
+     * @throws IOException
+     *             en cas d'erreur d'entrée-sortie
+     * @throws IllegalArgumentException
+     *             si le fichier ne contient pas un film valide
+     */
+    public static Movie readFile(File file) throws IOException {
+
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return read(in);
+        }
+    }
+
+    private static void apply(byte event, Joypad joypad) {
+
+        Joypad.Key key = KEYS[event & KEY_MASK];
+        if ((event & PRESSED) != 0)
+            joypad.keyPressed(key);
+        else
+            joypad.keyReleased(key);
+    }
+
+    private static void writeVarLong(DataOutputStream s, long v)
+            throws IOException {
+
+        while ((v & ~0x7FL) != 0) {
+            s.writeByte((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        s.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream s) throws IOException {
+
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            Preconditions.checkArgument(shift < Long.SIZE);
+            b = s.readByte();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return v;
+    }
+
+    /**
+     * Enregistreur de film, qui applique au clavier d'un Game Boy les
+     * événements qu'on lui transmet en les associant au cycle courant de
+     * celui-ci
+     */
+    public static final class Recorder {
+
+        private final GameBoy gameBoy;
+        private final byte[] initialState;
+        private final long startCycle;
+        private long[] cycles = new long[16];
+        private byte[] events = new byte[16];
+        private int size;
+
+        /**
+         * Commence l'enregistrement d'un film du Game Boy donné, à partir de
+         * son état actuel, qui est enregistré à moins que le Game Boy n'ait
+         * encore rien simulé
+         *
+         * @param gameBoy
+         */
+        public Recorder(GameBoy gameBoy) {
+
+            this.gameBoy = Objects.requireNonNull(gameBoy);
+            startCycle = gameBoy.cycles();
+
+            if (startCycle == 0) {
+                initialState = null;
+            } else {
+                ByteBuffer b = ByteBuffer.allocate(gameBoy.stateSize());
+                gameBoy.saveState(b);
+                initialState = b.array();
+            }
+        }
+
+        /**
+         * Presse la touche donnée et l'enregistre
+         *
+         * @param key
+         */
+        public void keyPressed(Joypad.Key key) {
+
+            gameBoy.joypad().keyPressed(key);
+            add((byte) (key.ordinal() | PRESSED));
+        }
+
+        /**
+         * Relâche la touche donnée et l'enregistre
+         *
+         * @param key
+         */
+        public void keyReleased(Joypad.Key key) {
+
+            gameBoy.joypad().keyReleased(key);
+            add((byte) key.ordinal());
+        }
+
+        /**
+         * Oublie les événements postérieurs au cycle courant du Game Boy,
+         * après que celui-ci soit revenu en arrière
+         *
+         * @return faux si le Game Boy est revenu avant le début du film, qui
+         *         ne peut alors plus être prolongé
+         */
+        public boolean truncate() {
+
+            long cycle = gameBoy.cycles();
+            while (size > 0 && cycles[size - 1] > cycle)
+                --size;
+            return cycle >= startCycle;
+        }
+
+        /**
+         * Termine le film au cycle courant du Game Boy
+         *
+         * @return le film enregistré
+         * @throws IllegalStateException
+         *             si le Game Boy est revenu avant le début du film
+         */
+        public Movie build() {
+
+            if (gameBoy.cycles() < startCycle)
+                throw new IllegalStateException();
+            truncate();
+            return new Movie(initialState, Arrays.copyOf(cycles, size),
+                    Arrays.copyOf(events, size), startCycle, gameBoy.cycles());
+        }
+
+        private void add(byte event) {
+
+            if (size == cycles.length) {
+                cycles = Arrays.copyOf(cycles, 2 * size);
+                events = Arrays.copyOf(events, 2 * size);
+            }
+            cycles[size] = gameBoy.cycles();
+            events[size++] = event;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package ch.epfl.gameboj;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.cpu.Opcode;
+
+/**
+ * Compteurs de performance d'un Game Boy : instructions exécutées par
+ * famille, lectures et écritures sur le bus par région, interruptions
+ * traitées, lignes dessinées, transferts DMA et images produites
+ *
+ * Les compteurs ne sont incrémentés que s'ils ont été installés au moyen de
+ * GameBoy.setCounters ; sinon, chaque composant se contente de tester une
+ * référence nulle. Ils sont incrémentés sans synchronisation par le fil
+ * d'émulation, de sorte qu'un instantané pris depuis un autre fil peut
+ * être légèrement en retard
+ */
+public final class PerformanceCounters implements PerformanceCountersMXBean {
+
+    /**
+     * Région de l'espace d'adressage
+     */
+    public enum Region {
+        ROM(0x0000, 0x8000),
+        VIDEO_RAM(AddressMap.VIDEO_RAM_START, AddressMap.VIDEO_RAM_END),
+        CARTRIDGE_RAM(AddressMap.VIDEO_RAM_END, AddressMap.WORK_RAM_START),
+        WORK_RAM(AddressMap.WORK_RAM_START, AddressMap.WORK_RAM_END),
+        ECHO_RAM(AddressMap.ECHO_RAM_START, AddressMap.ECHO_RAM_END),
+        OAM(AddressMap.OAM_START, AddressMap.OAM_END),
+        UNUSABLE(AddressMap.OAM_END, AddressMap.REGS_START),
+        REGS(AddressMap.REGS_START, AddressMap.HIGH_RAM_START),
+        HIGH_RAM(AddressMap.HIGH_RAM_START, AddressMap.HIGH_RAM_END),
+        REG_IE(AddressMap.REG_IE, AddressMap.REG_IE + 1);
+
+        private final int start, end;
+
+        private Region(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return la première adresse de la région
+         */
+        public int start() {
+            return start;
+        }
+
+        /**
+         * @return l'adresse suivant la dernière de la région
+         */
+        public int end() {
+            return end;
+        }
+    }
+
+    private static final Opcode.Family[] FAMILIES = Opcode.Family.values();
+    private static final Region[] REGIONS = Region.values();
+    private static final Cpu.Interrupt[] INTERRUPTS = Cpu.Interrupt.values();
+
+    // Index de la région de chaque adresse
+    private static final byte[] REGION_OF = new byte[0x10000];
+    static {
+        for (Region r : REGIONS)
+            Arrays.fill(REGION_OF, r.start, r.end, (byte) r.ordinal());
+    }
+
+    private final long[] instructions = new long[FAMILIES.length];
+    private final long[] reads = new long[REGIONS.length];
+    private final long[] writes = new long[REGIONS.length];
+    private final long[] interrupts = new long[INTERRUPTS.length];
+    private long scanlines, dmaTransfers, frames;
+
+    /**
+     * Compte une instruction de la famille donnée
+     *
+     * @param family
+     */
+    public void instructionExecuted(Opcode.Family family) {
+        ++instructions[family.ordinal()];
+    }
+
+    /**
+     * Compte une lecture à l'adresse donnée, supposée valide
+     *
+     * @param address
+     */
+    public void busRead(int address) {
+        ++reads[REGION_OF[address]];
+    }
+
+    /**
+     * Compte une écriture à l'adresse donnée, supposée valide
+     *
+     * @param address
+     */
+    public void busWritten(int address) {
+        ++writes[REGION_OF[address]];
+    }
+
+    /**
+     * Compte le traitement de l'interruption d'index donné
+     *
+     * @param index
+     */
+    public void interruptServiced(int index) {
+        ++interrupts[index];
+    }
+
+    /**
+     * Compte une ligne dessinée
+     */
+    public void scanlineRendered() {
+        ++scanlines;
+    }
+
+    /**
+     * Compte un transfert DMA
+     */
+    public void dmaStarted() {
+        ++dmaTransfers;
+    }
+
+    /**
+     * Compte une image, dessinée ou sautée
+     */
+    public void frameCompleted() {
+        ++frames;
+    }
+
+    /**
+     * Retourne un instantané immuable des compteurs
+     *
+     * @return l'instantané
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Enregistre ces compteurs auprès du serveur JMX de la plateforme, sous
+     * le nom ch.epfl.gameboj:type=PerformanceCounters,name=n, où n est le nom
+     * donné
+     *
+     * @param name
+     * @return le nom JMX des compteurs
+     * @throws IllegalArgumentException
+     *             si le nom n'est pas valide ou déjà utilisé
+     */
+    public ObjectName register(String name) {
+
+        try {
+            ObjectName objectName = new ObjectName(
+                    "ch.epfl.gameboj:type=PerformanceCounters,name="
+                            + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getInstructions() {
+        return byName(snapshot().instructions());
+    }
+
+    @Override
+    public Map<String, Long> getReads() {
+        return byName(snapshot().reads());
+    }
+
+    @Override
+    public Map<String, Long> getWrites() {
+        return byName(snapshot().writes());
+    }
+
+    @Override
+    public Map<String, Long> getInterrupts() {
+        return byName(snapshot().interrupts());
+    }
+
+    @Override
+    public long getInstructionCount() {
+        return Arrays.stream(instructions).sum();
+    }
+
+    @Override
+    public long getScanlines() {
+        return scanlines;
+    }
+
+    @Override
+    public long getDmaTransfers() {
+        return dmaTransfers;
+    }
+
+    @Override
+    public long getFrames() {
+        return frames;
+    }
+
+    @Override
+    public void reset() {
+
+        Arrays.fill(instructions, 0);
+        Arrays.fill(reads, 0);
+        Arrays.fill(writes, 0);
+        Arrays.fill(interrupts, 0);
+        scanlines = dmaTransfers = frames = 0;
+    }
+
+    private static <E extends Enum<E>> Map<String, Long> byName(
+            Map<E, Long> map) {
+
+        Map<String, Long> m = new LinkedHashMap<>();
+        map.forEach((k, v) -> m.put(k.name(), v));
+        return m;
+    }
+
+    private static <E extends Enum<E>> Map<E, Long> toMap(Class<E> type,
+            E[] keys, long[] values) {
+
+        Map<E, Long> m = new EnumMap<>(type);
+        for (int i = 0; i < keys.length; ++i) {
+            if (values[i] != 0)
+                m.put(keys[i], values[i]);
+        }
+        return Collections.unmodifiableMap(m);
+    }
+
+    /**
+     * Instantané immuable des compteurs ; les tables ne contiennent que les
+     * compteurs non nuls
+     */
+    public static final class Snapshot {
+
+        private final Map<Opcode.Family, Long> instructions;
+        private final Map<Region, Long> reads, writes;
+        private final Map<Cpu.Interrupt, Long> interrupts;
+        private final long scanlines, dmaTransfers, frames;
+
+        private Snapshot(PerformanceCounters c) {
+
+            instructions = toMap(Opcode.Family.class, FAMILIES,
+                    c.instructions);
+            reads = toMap(Region.class, REGIONS, c.reads);
+            writes = toMap(Region.class, REGIONS, c.writes);
+            interrupts = toMap(Cpu.Interrupt.class, INTERRUPTS, c.interrupts);
+            scanlines = c.scanlines;
+            dmaTransfers = c.dmaTransfers;
+            frames = c.frames;
+        }
+
+        /**
+         * @return le nombre d'instructions exécutées par famille
+         */
+        public Map<Opcode.Family, Long> instructions() {
+            return instructions;
+        }
+
+        /**
+         * @return le nombre total d'instructions exécutées
+         */
+        public long instructionCount() {
+            return instructions.values().stream().mapToLong(Long::longValue)
+                    .sum();
+        }
+
+        /**
+         * @return le nombre de lectures sur le bus par région
+         */
+        public Map<Region, Long> reads() {
+            return reads;
+        }
+
+        /**
+         * @return le nombre d'écritures sur le bus par région
+         */
+        public Map<Region, Long> writes() {
+            return writes;
+        }
+
+        /**
+         * @return le nombre d'interruptions traitées par type
+         */
+        public Map<Cpu.Interrupt, Long> interrupts() {
+            return interrupts;
+        }
+
+        /**
+         * @return le nombre de lignes dessinées
+         */
+        public long scanlines() {
+            return scanlines;
+        }
+
+        /**
+         * @return le nombre de transferts DMA
+         */
+        public long dmaTransfers() {
+            return dmaTransfers;
+        }
+
+        /**
+         * @return le nombre d'images produites, dessinées ou sautées
+         */
+        public long frames() {
+            return frames;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d instructions, %d frames, %d scanlines, %d DMA,"
+                            + " interrupts %s, reads %s, writes %s",
+                    instructionCount(), frames, scanlines, dmaTransfers,
+                    interrupts, reads, writes);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ch.epfl.gameboj;
+
+import java.util.Map;
+
+/**
+ * Interface de gestion (JMX) des compteurs de performance d'un Game Boy ;
+ * les tables associent le nom de chaque famille d'instructions, région de
+ * l'espace d'adressage ou interruption à son compteur
+ */
+public interface PerformanceCountersMXBean {
+
+    /**
+     * @return le nombre d'instructions exécutées par famille
+     */
+    Map<String, Long> getInstructions();
+
+    /**
+     * @return le nombre de lectures sur le bus par région
+     */
+    Map<String, Long> getReads();
+
+    /**
+     * @return le nombre d'écritures sur le bus par région
+     */
+    Map<String, Long> getWrites();
+
+    /**
+     * @return le nombre d'interruptions traitées par type
+     */
+    Map<String, Long> getInterrupts();
+
+    /**
+     * @return le nombre total d'instructions exécutées
+     */
+    long getInstructionCount();
+
+    /**
+     * @return le nombre de lignes dessinées
+     */
+    long getScanlines();
+
+    /**
+     * @return le nombre de transferts DMA
+     */
+    long getDmaTransfers();
+
+    /**
+     * @return le nombre d'images produites, dessinées ou sautées
+     */
+    long getFrames();
+
+    /**
+     * Remet tous les compteurs à zéro
+     */
+    void reset();
+}
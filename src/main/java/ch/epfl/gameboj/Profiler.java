@@ -0,0 +1,349 @@
+package ch.epfl.gameboj;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntUnaryOperator;
+
+import ch.epfl.gameboj.component.cpu.Opcode;
+
+/**
+ * Profileur exact du code exécuté par le processeur : il compte les cycles
+ * passés à chaque adresse, en distinguant les banques de la mémoire morte
+ * de la cartouche, et reconstruit l'arbre des appels du jeu à partir des
+ * instructions d'appel (CALL, RST) et de retour (RET, RETI), ainsi que des
+ * interruptions. Comme certains jeux dépilent une adresse de retour pour ne
+ * jamais y revenir, chaque appel est associé au pointeur de pile qui suit
+ * l'empilement de son adresse de retour, et les appels dont l'adresse de
+ * retour a été dépilée sont considérés comme terminés
+ *
+ * Une adresse de code est désignée par « banque:adresse », l'adresse d'une
+ * banque autre que la banque 0 étant toujours donnée entre 400016 et 7FFF16,
+ * comme le font la plupart des débogueurs ; le code de la mémoire de
+ * démarrage, tant qu'elle recouvre la cartouche, est désigné par
+ * « BOOT:adresse »
+ *
+ * Le profileur n'est actif que s'il a été installé au moyen de
+ * GameBoy.setProfiler, qui lui indique quelle banque est visible à chaque
+ * adresse ; il ne doit être consulté que par le fil qui simule le Game Boy
+ */
+public final class Profiler {
+
+    /**
+     * Banque des adresses de la mémoire de démarrage
+     */
+    public static final int BOOT_ROM_BANK = -1;
+
+    private static final int BANK_SIZE = 0x4000;
+    private static final int ROM_END = 2 * BANK_SIZE;
+    private static final int MAX_BANKS = 0x100;
+    private static final int BOOT_ROM_INDEX = MAX_BANKS;
+    private static final int MAX_DEPTH = 256;
+    private static final String ROOT = "root";
+
+    private IntUnaryOperator romBank = address -> 0;
+
+    // Cycles par adresse : la banque 0 couvre tout l'espace d'adressage,
+    // les autres banques et la mémoire de démarrage (à l'index
+    // BOOT_ROM_INDEX), allouées à la demande, ne couvrent que 16 Ko
+    private final long[][] cycles = new long[MAX_BANKS + 1][];
+    private long totalCycles;
+
+    // Pointeur de pile après l'empilement de l'adresse de retour de chaque
+    // appel en cours, le plus profond à l'index depth - 1
+    private final Node root = new Node(null, -1);
+    private final int[] stackPointers = new int[MAX_DEPTH];
+    private Node current = root;
+    private int depth;
+
+    /**
+     * Construit un profileur, à installer au moyen de GameBoy.setProfiler
+     */
+    public Profiler() {
+
+        cycles[0] = new long[0x10000];
+    }
+
+    /**
+     * Définit la fonction retournant la banque de mémoire morte visible à une
+     * adresse inférieure à 800016, ou BOOT_ROM_BANK (ou toute autre valeur
+     * négative) si la mémoire de démarrage y est visible ; jusque-là, tout le
+     * code de la mémoire morte est attribué à la banque 0
+     *
+     * @param romBank
+     * @throws NullPointerException
+     *             si la fonction est nulle
+     */
+    void setRomBank(IntUnaryOperator romBank) {
+
+        this.romBank = Objects.requireNonNull(romBank);
+    }
+
+    /**
+     * Signale l'exécution d'une instruction
+     *
+     * @param pc
+     *            l'adresse de l'instruction
+     * @param opcode
+     *            l'instruction
+     * @param instructionCycles
+     *            le nombre de cycles effectivement utilisés, y compris ceux
+     *            d'une condition vérifiée
+     * @param nextPc
+     *            l'adresse de l'instruction suivante
+     * @param sp
+     *            le pointeur de pile après l'instruction
+     */
+    public void instructionExecuted(int pc, Opcode opcode,
+            int instructionCycles, int nextPc, int sp) {
+
+        count(key(pc), instructionCycles);
+        current.cycles += instructionCycles;
+
+        // Les cycles de l'appel sont comptés dans l'appelant, ceux du retour
+        // dans l'appelé
+        boolean taken = instructionCycles > opcode.cycles;
+        switch (opcode.family) {
+        case CALL_N16:
+        case RST_U3:
+            enter(nextPc, sp);
+            break;
+        case CALL_CC_N16:
+            if (taken)
+                enter(nextPc, sp);
+            break;
+        case RET:
+        case RETI:
+            leave(sp);
+            break;
+        case RET_CC:
+            if (taken)
+                leave(sp);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Signale le traitement d'une interruption, qui est considéré comme un
+     * appel du gestionnaire à l'adresse donnée
+     *
+     * @param handler
+     *            l'adresse du gestionnaire
+     * @param interruptCycles
+     *            le nombre de cycles du traitement
+     * @param sp
+     *            le pointeur de pile après l'empilement de l'adresse de
+     *            retour
+     */
+    public void interruptServiced(int handler, int interruptCycles, int sp) {
+
+        enter(handler, sp);
+        current.cycles += interruptCycles;
+        count(key(handler), interruptCycles);
+    }
+
+    /**
+     * @return le nombre total de cycles profilés
+     */
+    public long totalCycles() {
+        return totalCycles;
+    }
+
+    /**
+     * @return la profondeur de l'appel en cours, 0 à la racine
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Retourne les adresses auxquelles le plus de cycles ont été passés, par
+     * ordre décroissant de cycles
+     *
+     * @param n
+     *            le nombre maximal d'adresses
+     * @return les n adresses les plus coûteuses
+     * @throws IllegalArgumentException
+     *             si n est négatif
+     */
+    public List<HotSpot> hotSpots(int n) {
+
+        Preconditions.checkArgument(n >= 0);
+
+        List<HotSpot> spots = new ArrayList<>();
+        for (int index = 0; index < cycles.length; ++index) {
+            long[] c = cycles[index];
+            if (c == null)
+                continue;
+            for (int i = 0; i < c.length; ++i) {
+                if (c[i] != 0)
+                    spots.add(new HotSpot(bank(index), address(index, i),
+                            c[i]));
+            }
+        }
+        spots.sort(Comparator.comparingLong(HotSpot::cycles).reversed());
+        return spots.subList(0, Math.min(n, spots.size()));
+    }
+
+    /**
+     * Écrit l'arbre des appels au format des piles repliées (« folded
+     * stacks »), lu p.ex. par flamegraph.pl ou speedscope : une ligne par
+     * pile d'appels, formée des fonctions séparées par des points-virgules,
+     * suivie des cycles passés dans la dernière
+     *
+     * @param out
+     * @throws IOException
+     *             en cas d'erreur d'écriture
+     */
+    public void writeFoldedStacks(Appendable out) throws IOException {
+        root.write(out, new StringBuilder(ROOT));
+    }
+
+    // L'index de la banque (BOOT_ROM_INDEX pour la mémoire de démarrage)
+    // dans les bits 16 à 24, l'adresse dans les bits 0 à 15
+    private int key(int pc) {
+
+        if (pc >= ROM_END)
+            return pc;
+        int bank = romBank.applyAsInt(pc);
+        if (bank < 0)
+            return BOOT_ROM_INDEX << 16 | pc;
+        return bank == 0 ? pc : bank << 16 | BANK_SIZE | pc & (BANK_SIZE - 1);
+    }
+
+    private void count(int key, int keyCycles) {
+
+        int index = key >>> 16;
+        long[] c = cycles[index];
+        if (c == null)
+            c = cycles[index] = new long[BANK_SIZE];
+        c[index == 0 ? key : key & (BANK_SIZE - 1)] += keyCycles;
+        totalCycles += keyCycles;
+    }
+
+    private static int bank(int index) {
+        return index == BOOT_ROM_INDEX ? BOOT_ROM_BANK : index;
+    }
+
+    private static int address(int index, int offset) {
+        return index == 0 || index == BOOT_ROM_INDEX ? offset
+                : BANK_SIZE | offset;
+    }
+
+    // Au-delà de la profondeur maximale, un appel est compté dans l'appelant
+    private void enter(int target, int sp) {
+
+        unwind(sp + 1);
+        if (depth < MAX_DEPTH) {
+            current = current.child(key(target));
+            stackPointers[depth++] = sp;
+        }
+    }
+
+    // Termine l'appel dont l'adresse de retour vient d'être dépilée, ainsi
+    // que ceux, plus profonds, qui n'étaient pas terminés ; un retour sans
+    // appel correspondant est ignoré
+    private void leave(int sp) {
+        unwind(sp);
+    }
+
+    // Termine les appels dont l'adresse de retour se trouve sous la pile
+    private void unwind(int sp) {
+
+        while (depth > 0 && stackPointers[depth - 1] < sp) {
+            current = current.parent;
+            --depth;
+        }
+    }
+
+    private static String name(int bank, int address) {
+
+        return bank == BOOT_ROM_BANK ? String.format("BOOT:%04X", address)
+                : String.format("%02X:%04X", bank, address);
+    }
+
+    /**
+     * Adresse de code et nombre de cycles qui y ont été passés
+     */
+    public static final class HotSpot {
+
+        private final int bank, address;
+        private final long cycles;
+
+        private HotSpot(int bank, int address, long cycles) {
+
+            this.bank = bank;
+            this.address = address;
+            this.cycles = cycles;
+        }
+
+        /**
+         * @return la banque de mémoire morte, ou BOOT_ROM_BANK pour la
+         *         mémoire de démarrage
+         */
+        public int bank() {
+            return bank;
+        }
+
+        /**
+         * @return l'adresse
+         */
+        public int address() {
+            return address;
+        }
+
+        /**
+         * @return le nombre de cycles
+         */
+        public long cycles() {
+            return cycles;
+        }
+
+        @Override
+        public String toString() {
+            return name(bank, address) + " " + cycles;
+        }
+    }
+
+    // Nœud de l'arbre des appels, désignant une fonction appelée depuis la
+    // pile de ses ancêtres
+    private static final class Node {
+
+        private final Node parent;
+        private final int key;
+        private final Map<Integer, Node> children = new HashMap<>();
+        private long cycles;
+
+        private Node(Node parent, int key) {
+
+            this.parent = parent;
+            this.key = key;
+        }
+
+        private Node child(int key) {
+            return children.computeIfAbsent(key, k -> new Node(this, k));
+        }
+
+        private void write(Appendable out, StringBuilder stack)
+                throws IOException {
+
+            if (cycles != 0)
+                out.append(stack).append(' ').append(Long.toString(cycles))
+                        .append('\n');
+
+            int length = stack.length();
+            for (Node child : children.values()) {
+                stack.append(';').append(
+                        name(bank(child.key >>> 16), child.key & 0xFFFF));
+                child.write(out, stack);
+                stack.setLength(length);
+            }
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package ch.epfl.gameboj;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.Stateful;
 
-public final class RegisterFile<E extends Register> {
+public final class RegisterFile<E extends Register> implements Stateful {
     
     private final byte banc[];
     
@@ -60,4 +63,28 @@ public final class RegisterFile<E extends Register> {
         
         set(reg, Bits.set(get(reg), bit.index(), newValue));
     }
+
+    /**
+     * Copie dans ce banc le contenu de tous les registres du banc donné
+     * 
+     * @param that
+     */
+    public void copyStateFrom(RegisterFile<E> that) {
+        System.arraycopy(that.banc, 0, banc, 0, banc.length);
+    }
+
+    @Override
+    public int stateSize() {
+        return banc.length;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put(banc);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        buffer.get(banc);
+    }
 }
@@ -0,0 +1,238 @@
+package ch.epfl.gameboj;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Mémoire des états successifs d'un Game Boy, permettant de revenir en
+ * arrière dans la simulation
+ *
+ * Seul l'état le plus récent est conservé en entier ; chacun des précédents
+ * est stocké sous la forme de la différence (ou exclusif) entre lui et son
+ * successeur, compressée en codant les suites d'octets nuls par leur longueur,
+ * puisque la plupart des mémoires ne changent pas d'un état à l'autre. Lorsque
+ * la taille totale des différences dépasse le budget, les plus anciennes sont
+ * oubliées
+ */
+public final class RewindBuffer {
+
+    private final GameBoy gameBoy;
+    private final long snapshotCycles;
+    private final long byteBudget;
+
+    // Les différences, de la plus ancienne à la plus récente, et l'état le
+    // plus récent, valide ssi hasLatest, qui est aussi le dernier état
+    // rétabli ; le Game Boy est dans cet état tant que son nombre de cycles
+    // vaut latestCycle, et rewinding indique que le dernier appel était un
+    // retour en arrière, la simulation n'ayant pas repris depuis
+    private final Deque<byte[]> deltas = new ArrayDeque<>();
+    private final byte[] latest, current, scratch;
+    private final ByteBuffer currentBuffer;
+    private boolean hasLatest, rewinding;
+    private long latestCycle;
+    private long deltaBytes;
+    private long nextSnapshotCycle;
+
+    /**
+     * Construit une mémoire des états du Game Boy donné, qui en enregistre un
+     * au plus toutes les n images, n étant le nombre d'images donné, et dont
+     * les différences occupent au plus le nombre d'octets donné
+     *
+     * @param gameBoy
+     * @param frames
+     * @param byteBudget
+     * @throws IllegalArgumentException
+     *             si le nombre d'images n'est pas strictement positif ou si le
+     *             budget est négatif
+     */
+    public RewindBuffer(GameBoy gameBoy, int frames, long byteBudget) {
+
+        Preconditions.checkArgument(frames > 0 && byteBudget >= 0);
+
+        this.gameBoy = Objects.requireNonNull(gameBoy);
+        this.snapshotCycles = (long) frames * LcdController.FRAME_CYCLES;
+        this.byteBudget = byteBudget;
+
+        int size = gameBoy.stateSize();
+        latest = new byte[size];
+        current = new byte[size];
+        scratch = new byte[maxDeltaSize(size)];
+        currentBuffer = ByteBuffer.wrap(current);
+        nextSnapshotCycle = gameBoy.cycles();
+    }
+
+    /**
+     * Enregistre l'état actuel du Game Boy si le nombre d'images donné à la
+     * construction a été simulé depuis le dernier enregistrement (ou le
+     * dernier retour en arrière) ; à appeler régulièrement pendant la
+     * simulation, cette méthode signale aussi que celle-ci a repris après un
+     * retour en arrière
+     *
+     * @return vrai ssi l'état a été enregistré
+     */
+    public boolean record() {
+
+        rewinding = false;
+        if (gameBoy.cycles() < nextSnapshotCycle) {
+            return false;
+        }
+        snapshot();
+        return true;
+    }
+
+    /**
+     * Enregistre immédiatement l'état actuel du Game Boy
+     */
+    public void snapshot() {
+
+        currentBuffer.clear();
+        gameBoy.saveState(currentBuffer);
+
+        if (hasLatest) {
+            int length = encodeDelta(current, latest, scratch);
+            byte[] delta = new byte[length];
+            System.arraycopy(scratch, 0, delta, 0, length);
+            deltas.addLast(delta);
+            deltaBytes += length;
+
+            while (deltaBytes > byteBudget) {
+                deltaBytes -= deltas.removeFirst().length;
+            }
+        }
+
+        System.arraycopy(current, 0, latest, 0, latest.length);
+        hasLatest = true;
+        rewinding = false;
+        latestCycle = gameBoy.cycles();
+        nextSnapshotCycle = latestCycle + snapshotCycles;
+    }
+
+    /**
+     * Rétablit dans le Game Boy le plus récent des états enregistrés si la
+     * simulation a avancé depuis qu'il a été enregistré ou rétabli, et le
+     * précédent, en oubliant alors le plus récent, si le Game Boy est encore
+     * dans cet état ou si l'appel précédent était déjà un retour en arrière
+     * sans que record ait été appelée depuis (p.ex. lorsqu'une image est
+     * simulée après chaque retour pour l'afficher). L'état rétabli reste
+     * enregistré, de sorte que la simulation puisse reprendre à partir de lui
+     * et que les états suivants soient enregistrés à sa suite
+     *
+     * @return vrai ssi un état a été rétabli, faux si aucun état antérieur à
+     *         l'état actuel n'est enregistré
+     */
+    public boolean rewind() {
+
+        if (!hasLatest) {
+            return false;
+        }
+
+        if (rewinding || gameBoy.cycles() == latestCycle) {
+            if (deltas.isEmpty()) {
+                return false;
+            }
+            byte[] delta = deltas.removeLast();
+            deltaBytes -= delta.length;
+            applyDelta(delta, latest);
+        }
+
+        gameBoy.loadState(ByteBuffer.wrap(latest));
+        rewinding = true;
+        latestCycle = gameBoy.cycles();
+        nextSnapshotCycle = latestCycle + snapshotCycles;
+        return true;
+    }
+
+    /**
+     * @return le nombre d'états enregistrés
+     */
+    public int size() {
+        return hasLatest ? deltas.size() + 1 : 0;
+    }
+
+    /**
+     * @return le nombre d'octets occupés par les différences enregistrées
+     */
+    public long deltaBytes() {
+        return deltaBytes;
+    }
+
+    /**
+     * Oublie tous les états enregistrés
+     */
+    public void clear() {
+
+        deltas.clear();
+        deltaBytes = 0;
+        hasLatest = false;
+        rewinding = false;
+        nextSnapshotCycle = gameBoy.cycles();
+    }
+
+    // Une différence est une suite de paires (nombre d'octets nuls, nombre
+    // d'octets non nuls), codées sur 7 bits par octet, chacune suivie des
+    // octets non nuls en question ; au pire, un octet non nul isolé coûte
+    // ainsi 3 octets tous les 2 octets d'état
+    static int maxDeltaSize(int size) {
+        return 2 * size + 2 * 5;
+    }
+
+    static int encodeDelta(byte[] a, byte[] b, byte[] out) {
+
+        int i = 0, o = 0;
+        while (i < a.length) {
+
+            int zerosStart = i;
+            int mismatch = Arrays.mismatch(a, i, a.length, b, i, b.length);
+            i = mismatch < 0 ? a.length : i + mismatch;
+            int literalsStart = i;
+            while (i < a.length && a[i] != b[i])
+                ++i;
+
+            o = putLength(out, o, literalsStart - zerosStart);
+            o = putLength(out, o, i - literalsStart);
+            for (int j = literalsStart; j < i; ++j)
+                out[o++] = (byte) (a[j] ^ b[j]);
+        }
+        return o;
+    }
+
+    static void applyDelta(byte[] delta, byte[] target) {
+
+        int i = 0, o = 0;
+        while (i < delta.length) {
+
+            int zeros = 0, literals = 0, shift = 0;
+            byte x;
+            do {
+                x = delta[i++];
+                zeros |= (x & 0x7F) << shift;
+                shift += 7;
+            } while (x < 0);
+            shift = 0;
+            do {
+                x = delta[i++];
+                literals |= (x & 0x7F) << shift;
+                shift += 7;
+            } while (x < 0);
+
+            o += zeros;
+            for (int j = 0; j < literals; ++j)
+                target[o++] ^= delta[i++];
+        }
+    }
+
+    private static int putLength(byte[] out, int o, int length) {
+
+        while (length >= 0x80) {
+            out[o++] = (byte) (length | 0x80);
+            length >>>= 7;
+        }
+        out[o++] = (byte) length;
+        return o;
+    }
+}
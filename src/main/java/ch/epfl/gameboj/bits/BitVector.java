@@ -3,6 +3,7 @@ package ch.epfl.gameboj.bits;
 import ch.epfl.gameboj.Preconditions;
 
 import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
 
 public final class BitVector {
 
@@ -122,6 +123,24 @@ public final class BitVector {
         return this.not().and(bv).or(this.and(bv.not()));
     }
 
+    /**
+     * Combine le vecteur avec un autre de même taille, en appliquant
+     * l'opérateur donné à chaque paire de mots de 32 bits de même index
+     * 
+     * @param bv
+     * @param op
+     * @return
+     */
+    public BitVector combine(BitVector bv, IntBinaryOperator op) {
+        Preconditions.checkArgument(bv.size() == size());
+
+        int combined[] = new int[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            combined[i] = op.applyAsInt(bits[i], bv.bits[i]);
+        }
+        return new BitVector(combined);
+    }
+
     /**
      * Permet de décaler le vecteur d'une distance quelconque, en utilisant la
      * convention habituelle qu'une distance positive représente un décalage à
@@ -10,5 +10,22 @@ public interface Clocked {
      * @param cycle
      */
     public abstract void cycle(long cycle);
+
+    /**
+     *  retourne l'index du prochain cycle, 
+     *  strictement postérieur au cycle donné 
+     *  (qui vient d'être simulé), durant lequel 
+     *  le composant a des opérations à exécuter, 
+     *  ou Long.MAX_VALUE s'il n'en a aucune tant 
+     *  que son état n'est pas modifié de l'extérieur ; 
+     *  par défaut, le composant doit être simulé 
+     *  à chaque cycle
+     * @param cycle
+     * @return le prochain cycle non oisif
+     */
+    public default long nextEventCycle(long cycle) {
+
+        return cycle + 1;
+    }
         
 }
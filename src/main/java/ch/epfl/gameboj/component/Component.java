@@ -41,4 +41,21 @@ public interface Component {
         
         bus.attach(this);
     }
+    
+    /**
+     * retourne les plages d'adresses auxquelles le 
+     * composant est susceptible de répondre, sous la 
+     * forme d'un tableau contenant à la suite l'adresse 
+     * de début (inclue) et l'adresse de fin (exclue) de 
+     * chaque plage ; le bus n'adresse le composant qu'à 
+     * l'intérieur de ces plages. Par défaut, le composant 
+     * couvre la totalité de l'espace d'adressage ; chaque
+     * appel retourne un nouveau tableau, que l'appelant
+     * peut modifier sans effet sur le composant
+     * @return les plages d'adresses du composant
+     */
+    public default int[] addressRanges() {
+        
+        return new int[] { 0x0000, 0x10000 };
+    }
 }
@@ -1,5 +1,6 @@
 package ch.epfl.gameboj.component;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import static ch.epfl.gameboj.bits.Bits.*;
@@ -9,7 +10,7 @@ import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 
-public final class Joypad implements Component {
+public final class Joypad implements Component, Stateful {
 
     /**
      * 
@@ -56,6 +57,40 @@ public final class Joypad implements Component {
         }
     }
 
+    @Override
+    public int[] addressRanges() {
+
+        return new int[] { AddressMap.REG_P1, AddressMap.REG_P1 + 1 };
+    }
+
+    /**
+     * Rend l'état du clavier égal à celui du clavier donné
+     * 
+     * @param that
+     */
+    public void copyStateFrom(Joypad that) {
+
+        p1 = that.p1;
+        pressedKeys = that.pressedKeys;
+    }
+
+    @Override
+    public int stateSize() {
+        return 2 * Integer.BYTES;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(p1).putInt(pressedKeys);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+
+        p1 = buffer.getInt();
+        pressedKeys = buffer.getInt();
+    }
+
     /**
      * Simule la pression d'une touche; prend en paramètre la touche en question
      * 
@@ -0,0 +1,39 @@
+package ch.epfl.gameboj.component;
+
+import java.nio.ByteBuffer;
+
+public interface Stateful {
+
+    /**
+     *  retourne la taille, en octets, de 
+     *  l'état modifiable de l'objet, tel 
+     *  qu'écrit par saveState ; elle ne 
+     *  dépend que de la configuration de 
+     *  l'objet (tailles des mémoires, etc.)
+     * @return la taille de l'état
+     */
+    public abstract int stateSize();
+
+    /**
+     *  écrit l'état modifiable de l'objet 
+     *  dans le tampon donné, à partir de 
+     *  sa position courante, qui est avancée 
+     *  de stateSize() octets
+     * @param buffer
+     * @throws java.nio.BufferOverflowException
+     *             si le tampon n'a pas assez de place
+     */
+    public abstract void saveState(ByteBuffer buffer);
+
+    /**
+     *  remplace l'état modifiable de l'objet 
+     *  par celui lu dans le tampon donné, à 
+     *  partir de sa position courante, tel 
+     *  qu'il a été écrit par saveState sur 
+     *  un objet de même configuration
+     * @param buffer
+     * @throws java.nio.BufferUnderflowException
+     *             si le tampon ne contient pas assez d'octets
+     */
+    public abstract void loadState(ByteBuffer buffer);
+}
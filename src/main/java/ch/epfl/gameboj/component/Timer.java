@@ -1,5 +1,6 @@
 package ch.epfl.gameboj.component;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
@@ -7,10 +8,14 @@ import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.cpu.Cpu;
 
-public final class Timer implements Component, Clocked {
+public final class Timer implements Component, Clocked, Stateful {
+
+    private static final int DIV_STEP = 4;
+    private static final int[] TAC_BITS = { 9, 3, 5, 7 };
 
     private final Cpu cpu;
     private int tima, tac, tma, div;
+    private long lastCycle;
 
     /**
      * construit un minuteur associé au processeur donné, ou lève l'exception
@@ -27,20 +32,44 @@ public final class Timer implements Component, Clocked {
         tma = 0;
         tima = 0;
         tac = 0;
+        lastCycle = -1;
     }
 
     @Override
     public void cycle(long cycle) {
 
-        boolean s0 = state();
-        div = Bits.clip(16, div + 4);
-        incIfChange(s0);
+        long elapsed = cycle - lastCycle;
+        lastCycle = cycle;
+
+        if (elapsed == 1) {
+
+            boolean s0 = state();
+            div = Bits.clip(16, div + 4);
+            incIfChange(s0);
+
+        } else if (elapsed > 1) {
+
+            catchUp(elapsed);
+        }
+    }
+
+    @Override
+    public long nextEventCycle(long cycle) {
+
+        if (!Bits.test(tac, 2)) {
+            return Long.MAX_VALUE;
+        }
+
+        int period = periodBits();
+        long overflowDiv = ((long) (div >> period) + 0x100 - tima) << period;
+        return lastCycle + (overflowDiv - div + DIV_STEP - 1) / DIV_STEP;
     }
 
     @Override
     public int read(int address) {
 
         Preconditions.checkBits16(address);
+        synchronize();
 
         switch (address) {
         case AddressMap.REG_DIV:
@@ -65,6 +94,7 @@ public final class Timer implements Component, Clocked {
 
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
+        synchronize();
 
         boolean s0 = state();
 
@@ -94,10 +124,98 @@ public final class Timer implements Component, Clocked {
         
     }
 
+    @Override
+    public int[] addressRanges() {
+
+        return new int[] { AddressMap.REG_DIV, AddressMap.REG_TAC + 1 };
+    }
+
+    /**
+     * rend l'état du minuteur égal à celui du minuteur donné
+     * 
+     * @param that
+     */
+    public void copyStateFrom(Timer that) {
+
+        tima = that.tima;
+        tac = that.tac;
+        tma = that.tma;
+        div = that.div;
+        lastCycle = that.lastCycle;
+    }
+
+    @Override
+    public int stateSize() {
+        return 4 * Integer.BYTES + Long.BYTES;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+
+        buffer.putInt(tima).putInt(tac).putInt(tma).putInt(div)
+                .putLong(lastCycle);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+
+        tima = buffer.getInt();
+        tac = buffer.getInt();
+        tma = buffer.getInt();
+        div = buffer.getInt();
+        lastCycle = buffer.getLong();
+    }
+
+    /**
+     * rattrape le retard du minuteur sur le processeur, qui peut exécuter
+     * plusieurs instructions d'un coup entre deux événements du minuteur
+     */
+    private void synchronize() {
+
+        if (cpu.currentCycle() > lastCycle) {
+            cycle(cpu.currentCycle());
+        }
+    }
+
     private boolean state() {
 
-        int bit[] = { 9, 3, 5, 7 };
-        return Bits.test(tac, 2) && Bits.test(div, bit[Bits.clip(2, tac)]);
+        return Bits.test(tac, 2) && Bits.test(div, TAC_BITS[Bits.clip(2, tac)]);
+    }
+
+    private int periodBits() {
+
+        return TAC_BITS[Bits.clip(2, tac)] + 1;
+    }
+
+    /**
+     * simule d'un coup le nombre de cycles donné : chaque passage de DIV
+     * par un multiple de la période du bit sélectionné correspond à un front
+     * descendant de ce bit, et donc à une incrémentation de TIMA
+     */
+    private void catchUp(long elapsed) {
+
+        long newDiv = div + DIV_STEP * elapsed;
+
+        if (Bits.test(tac, 2)) {
+
+            int period = periodBits();
+            long edges = (newDiv >> period) - (div >> period);
+
+            while (edges > 0) {
+
+                int untilOverflow = 0x100 - tima;
+                if (edges < untilOverflow) {
+                    tima += edges;
+                    edges = 0;
+                } else {
+                    edges -= untilOverflow;
+                    tima = tma;
+                    cpu.requestInterrupt(Cpu.Interrupt.TIMER);
+                }
+            }
+        }
+
+        div = (int) (newDiv & 0xFFFF);
     }
 
     private void incIfChange(boolean lastState) {
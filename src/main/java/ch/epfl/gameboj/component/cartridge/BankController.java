@@ -0,0 +1,36 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
+import ch.epfl.gameboj.component.memory.Rom;
+
+/**
+ * Contrôleur de banques d'une cartouche
+ */
+interface BankController extends Component, Stateful {
+
+    /**
+     * retourne un contrôleur indépendant de celui-ci, partageant sa mémoire
+     * morte et dans le même état, sa mémoire vive étant partagée page par page
+     * jusqu'à la première écriture
+     * 
+     * @return la copie du contrôleur
+     */
+    BankController fork();
+
+    /**
+     * retourne le numéro de la banque de mémoire morte visible à l'adresse
+     * donnée, comprise entre 0 et 7FFF16
+     * 
+     * @param address
+     * @return le numéro de la banque
+     */
+    int romBank(int address);
+
+    /**
+     * retourne la mémoire morte du contrôleur
+     * 
+     * @return la mémoire morte
+     */
+    Rom rom();
+}
@@ -2,15 +2,17 @@ package ch.epfl.gameboj.component.cartridge;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class Cartridge implements Component {
+public final class Cartridge implements Component, Stateful {
 
-    private final Component bankController;
+    private final BankController bankController;
     private static final int MBC_TYPE = 0x147;
     private static final int SIZE = 0x149;
     private static final int TITLE_START = 0x134;
@@ -18,7 +20,7 @@ public final class Cartridge implements Component {
     private static final int RAM_SIZE[] = new int[] { 0, 2048, 8192, 32768 };
     private final String name;
 
-    private Cartridge(Component bankController) {
+    private Cartridge(BankController bankController) {
 
         this.bankController = bankController;
 
@@ -43,15 +45,79 @@ public final class Cartridge implements Component {
      */
     public static Cartridge ofFile(File romFile) throws IOException {
 
-        byte data[] = Files.readAllBytes(romFile.toPath());
+        return ofBytes(Files.readAllBytes(romFile.toPath()));
+    }
+
+    /**
+     * retourne une cartouche dont la mémoire morte est le fichier donné,
+     * projeté en mémoire plutôt que lu ; ce mode évite de copier les gros
+     * fichiers au démarrage et partage le cache de pages du système entre les
+     * processus exécutant le même jeu ; lève les mêmes exceptions que ofFile
+     * 
+     * @param romFile
+     * @return
+     * @throws IOException
+     * @throws IllegalArgumentException
+     */
+    public static Cartridge ofMappedFile(File romFile) throws IOException {
+
+        return ofRom(Rom.mapFile(romFile));
+    }
+
+    /**
+     * retourne une cartouche dont la mémoire morte contient les octets donnés,
+     * ce qui permet de ne lire qu'une fois le fichier d'un jeu dont on simule
+     * plusieurs instances ; lève l'exception IllegalArgumentException si ces
+     * octets ne contiennent pas un type de contrôleur valide à la position 147
+     * 
+     * @param data
+     * @return
+     * @throws IllegalArgumentException
+     */
+    public static Cartridge ofBytes(byte[] data) {
 
-        Preconditions.checkArgument(data.length > MBC_TYPE);
-        Preconditions.checkArgument(data[MBC_TYPE] >= 0 && data[MBC_TYPE] <= 3);
+        return ofRom(new Rom(data));
+    }
 
-        if (data[MBC_TYPE] == 0)
-            return new Cartridge(new MBC0(new Rom(data)));
+    /**
+     * retourne une cartouche dont la mémoire morte est celle donnée ; une même
+     * mémoire morte, immuable, peut être partagée par autant de cartouches que
+     * l'on veut, chacune ayant son propre contrôleur (registres de banque et
+     * mémoire vive) ; lève l'exception IllegalArgumentException si la mémoire
+     * ne contient pas un type de contrôleur valide à la position 147
+     * 
+     * @param rom
+     * @return
+     * @throws NullPointerException
+     * @throws IllegalArgumentException
+     */
+    public static Cartridge ofRom(Rom rom) {
+
+        checkRom(rom);
+        if (rom.read(MBC_TYPE) == 0)
+            return new Cartridge(new MBC0(rom));
         else
-            return new Cartridge(new MBC1(new Rom(data), RAM_SIZE[data[SIZE]]));
+            return new Cartridge(new MBC1(rom, RAM_SIZE[rom.read(SIZE)]));
+    }
+
+    /**
+     * vérifie que la mémoire morte donnée peut constituer une cartouche,
+     * c-à-d qu'elle contient un type de contrôleur valide à la position 147,
+     * et la retourne ; permet de valider une fois pour toutes une mémoire
+     * partagée par plusieurs cartouches avant de construire celles-ci
+     * 
+     * @param rom
+     * @return la mémoire morte donnée
+     * @throws NullPointerException
+     *             si la mémoire est nulle
+     * @throws IllegalArgumentException
+     *             si la mémoire ne contient pas un type de contrôleur valide
+     */
+    public static Rom checkRom(Rom rom) {
+
+        Preconditions.checkArgument(rom.size() > SIZE);
+        Preconditions.checkArgument(rom.read(MBC_TYPE) <= 3);
+        return rom;
     }
 
     /**
@@ -79,4 +145,61 @@ public final class Cartridge implements Component {
         bankController.write(address, data);
     }
 
+    @Override
+    public int[] addressRanges() {
+
+        return bankController.addressRanges();
+    }
+
+    /**
+     * retourne une cartouche indépendante de celle-ci, dans le même état,
+     * partageant sa mémoire morte et, jusqu'à la première écriture dans
+     * chacune de ses pages, sa mémoire vive
+     * 
+     * @return la copie de la cartouche
+     */
+    public Cartridge fork() {
+        return new Cartridge(bankController.fork());
+    }
+
+    /**
+     * retourne le numéro de la banque de mémoire morte actuellement visible à
+     * l'adresse donnée, p.ex. pour identifier le code exécuté ; lève
+     * l'exception IllegalArgumentException si l'adresse n'est pas comprise
+     * entre 0 et 7FFF16
+     * 
+     * @param address
+     * @return le numéro de la banque
+     * @throws IllegalArgumentException
+     */
+    public int romBank(int address) {
+        Preconditions.checkArgument(address >= 0 && address < 0x8000);
+        return bankController.romBank(address);
+    }
+
+    /**
+     * retourne la mémoire morte de la cartouche, immuable et éventuellement
+     * partagée avec d'autres cartouches
+     * 
+     * @return la mémoire morte
+     */
+    public Rom rom() {
+        return bankController.rom();
+    }
+
+    @Override
+    public int stateSize() {
+        return bankController.stateSize();
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        bankController.saveState(buffer);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        bankController.loadState(buffer);
+    }
+
 }
@@ -1,12 +1,12 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.Preconditions;
-import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class MBC0 implements Component {
+public final class MBC0 implements BankController {
 
     private final Rom rom;
     private static final int ROM_SIZE = 0x8000;
@@ -44,4 +44,41 @@ public final class MBC0 implements Component {
 
     }
 
+    @Override
+    public int[] addressRanges() {
+
+        return new int[] { 0, rom.size() };
+    }
+
+    /**
+     * Le contrôleur n'ayant pas d'état modifiable, il est lui-même sa copie
+     */
+    @Override
+    public MBC0 fork() {
+        return this;
+    }
+
+    @Override
+    public int romBank(int address) {
+        return address >>> 14;
+    }
+
+    @Override
+    public Rom rom() {
+        return rom;
+    }
+
+    @Override
+    public int stateSize() {
+        return 0;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+    }
+
 }
@@ -1,13 +1,15 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.Bits;
-import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class MBC1 implements Component {
+public final class MBC1 implements BankController {
     private static final int RAM_ENABLE = 0xA;
+    private static final int[] ADDRESS_RANGES = new int[] { 0x0000, 0x8000, 0xA000, 0xC000 };
 
     private enum Mode { MODE_0, MODE_1 };
 
@@ -68,6 +70,54 @@ public final class MBC1 implements Component {
         }
     }
 
+    @Override
+    public int[] addressRanges() {
+        return ADDRESS_RANGES.clone();
+    }
+
+    @Override
+    public MBC1 fork() {
+        MBC1 copy = new MBC1(rom, ram.size());
+        copy.ramEnabled = ramEnabled;
+        copy.mode = mode;
+        copy.romLsb5 = romLsb5;
+        copy.ramRom2 = ramRom2;
+        copy.ram.copyStateFrom(ram);
+        return copy;
+    }
+
+    @Override
+    public int romBank(int address) {
+        return (address < 0x4000 ? romAddress(msb2(), 0, address)
+                : romAddress(ramRom2, romLsb5, address)) >>> 14;
+    }
+
+    @Override
+    public Rom rom() {
+        return rom;
+    }
+
+    @Override
+    public int stateSize() {
+        return 2 + 2 * Integer.BYTES + ram.stateSize();
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) (ramEnabled ? 1 : 0)).put((byte) mode.ordinal())
+                .putInt(romLsb5).putInt(ramRom2);
+        ram.saveState(buffer);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        ramEnabled = buffer.get() != 0;
+        mode = Mode.values()[buffer.get()];
+        romLsb5 = buffer.getInt();
+        ramRom2 = buffer.getInt();
+        ram.loadState(buffer);
+    }
+
     private int msb2() {
         switch (mode) {
         case MODE_0: return 0;
@@ -1,5 +1,7 @@
 package ch.epfl.gameboj.component.cpu;
 
+import java.util.function.IntUnaryOperator;
+
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
@@ -15,6 +17,18 @@ public final class Alu {
         LEFT, RIGHT
     } 
 
+    // Tables des résultats (paquets valeur/fanions) des opérations 8 bits,
+    // utilisées par le processeur via les méthodes sans validation ci-dessous
+    private static final int[] ADD_TABLE = buildBinaryTable(true);
+    private static final int[] SUB_TABLE = buildBinaryTable(false);
+    private static final int[] LOGIC_TABLE = buildUnaryTable(v -> or(v, 0));
+    private static final int[] SHIFT_LEFT_TABLE = buildUnaryTable(Alu::shiftLeft);
+    private static final int[] SHIFT_RIGHT_A_TABLE = buildUnaryTable(Alu::shiftRightA);
+    private static final int[] SHIFT_RIGHT_L_TABLE = buildUnaryTable(Alu::shiftRightL);
+    private static final int[] SWAP_TABLE = buildUnaryTable(Alu::swap);
+    private static final int[] ROTATE_TABLE = buildRotateTable();
+    private static final int[] BCD_TABLE = buildBcdTable();
+
     private Alu() {}
     
     /**
@@ -319,6 +333,106 @@ public final class Alu {
     }
     
     
+    // Chemin rapide : versions sans validation des opérations 8 bits,
+    // lisant leur résultat dans les tables précalculées ; réservées au
+    // processeur, qui ne leur passe que des valeurs 8 bits
+
+    static int fastAdd(int l, int r, boolean c0) {
+        return ADD_TABLE[(c0 ? 0x10000 : 0) | (l << 8) | r];
+    }
+
+    static int fastSub(int l, int r, boolean b0) {
+        return SUB_TABLE[(b0 ? 0x10000 : 0) | (l << 8) | r];
+    }
+
+    static int fastAnd(int l, int r) {
+        return LOGIC_TABLE[l & r] | Flag.H.mask();
+    }
+
+    static int fastOr(int l, int r) {
+        return LOGIC_TABLE[l | r];
+    }
+
+    static int fastXor(int l, int r) {
+        return LOGIC_TABLE[l ^ r];
+    }
+
+    static int fastShiftLeft(int v) {
+        return SHIFT_LEFT_TABLE[v];
+    }
+
+    static int fastShiftRightA(int v) {
+        return SHIFT_RIGHT_A_TABLE[v];
+    }
+
+    static int fastShiftRightL(int v) {
+        return SHIFT_RIGHT_L_TABLE[v];
+    }
+
+    static int fastSwap(int v) {
+        return SWAP_TABLE[v];
+    }
+
+    static int fastRotate(RotDir d, int v) {
+        return ROTATE_TABLE[(d.ordinal() << 10) | v];
+    }
+
+    static int fastRotate(RotDir d, int v, boolean c) {
+        return ROTATE_TABLE[(d.ordinal() << 10) | (c ? 0x200 : 0x100) | v];
+    }
+
+    static int fastBcdAdjust(int v, boolean n, boolean h, boolean c) {
+        return BCD_TABLE[(v << 3) | (n ? 4 : 0) | (h ? 2 : 0) | (c ? 1 : 0)];
+    }
+
+    // Les tables sont remplies à l'aide des méthodes publiques, ce qui
+    // garantit que le chemin rapide leur est identique
+
+    private static int[] buildBinaryTable(boolean add) {
+
+        int[] table = new int[2 * 0x10000];
+        for (int i = 0; i < table.length; ++i) {
+            int l = Bits.extract(i, 8, 8), r = Bits.clip(8, i);
+            boolean c = Bits.test(i, 16);
+            table[i] = add ? add(l, r, c) : sub(l, r, c);
+        }
+        return table;
+    }
+
+    private static int[] buildUnaryTable(IntUnaryOperator op) {
+
+        int[] table = new int[0x100];
+        for (int v = 0; v < table.length; ++v) {
+            table[v] = op.applyAsInt(v);
+        }
+        return table;
+    }
+
+    // Index : direction (bit 10), rotation à travers la retenue (bit 9
+    // ou 8 selon la retenue) ou non (bits 8 et 9 à 0), valeur (bits 0 à 7)
+    private static int[] buildRotateTable() {
+
+        int[] table = new int[2 * 0x400];
+        for (RotDir d : RotDir.values()) {
+            for (int v = 0; v < 0x100; ++v) {
+                int i = (d.ordinal() << 10) | v;
+                table[i] = rotate(d, v);
+                table[i | 0x100] = rotate(d, v, false);
+                table[i | 0x200] = rotate(d, v, true);
+            }
+        }
+        return table;
+    }
+
+    private static int[] buildBcdTable() {
+
+        int[] table = new int[0x100 << 3];
+        for (int i = 0; i < table.length; ++i) {
+            table[i] = bcdAdjust(i >>> 3, Bits.test(i, 2), Bits.test(i, 1), Bits.test(i, 0));
+        }
+        return table;
+    }
+
     /**
      * 
      * @return un "paquet" contenant une valeur 8/16 bits
@@ -0,0 +1,344 @@
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.function.IntUnaryOperator;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.memory.Rom;
+
+/**
+ * Cache des blocs de base traduits par le processeur : un bloc est une suite
+ * d'instructions exécutées en séquence, se terminant à la première
+ * instruction de saut, d'appel, de retour ou d'arrêt, dont l'opcode et les
+ * opérandes ont été lus une fois pour toutes
+ *
+ * Les blocs de la mémoire morte sont identifiés par leur banque, la fenêtre
+ * (0000 à 3FFF16 ou 4000 à 7FFF16) où elle est visible et leur adresse, et
+ * restent valides tant que la mémoire morte ne change pas ; ils sont donc
+ * partagés par tous les caches traduisant la même mémoire morte. Ceux de la
+ * mémoire de travail et de la mémoire haute, que seul le processeur modifie,
+ * sont propres à chaque cache et tous oubliés dès que celui-ci écrit dans
+ * l'un d'eux
+ *
+ * Une instruction qui n'écrit pas en mémoire et ne change pas l'état des
+ * interruptions ne peut modifier ni le code ni les interruptions en attente ;
+ * elle est donc fusionnée avec la suivante, que le processeur exécute dans
+ * la foulée si elle débute avant la fin de son budget. Les séquences les plus
+ * fréquentes des jeux (p.ex. LD A,(HL+) puis LD (DE),A, DEC B puis JR NZ, ou
+ * LDH A,(n) puis CP n puis JR) sont ainsi exécutées d'un seul tenant
+ */
+final class BlockCache {
+
+    /**
+     * Nombre maximal d'instructions d'un bloc
+     */
+    static final int MAX_LENGTH = 32;
+
+    /**
+     * Opérande des instructions qui n'en ont pas
+     */
+    static final int NO_OPERAND = -1;
+
+    private static final int ROM_BANK_SIZE = 0x4000;
+    private static final int ROM_END = 2 * ROM_BANK_SIZE;
+    private static final int MAX_BANKS = 0x100;
+    private static final int ECHO_OFFSET = AddressMap.ECHO_RAM_START
+            - AddressMap.WORK_RAM_START;
+    private static final int RAM_SIZE = AddressMap.WORK_RAM_SIZE
+            + AddressMap.HIGH_RAM_SIZE;
+
+    // Blocs de la mémoire morte partagés entre les caches, par mémoire morte
+    private static final Map<Rom, RomBlocks> SHARED_ROM_BLOCKS = new WeakHashMap<>();
+
+    private final Bus bus;
+    private final IntUnaryOperator romBank;
+
+    // Blocs de la mémoire morte, partagés, et copie locale de leurs tables par
+    // banque et fenêtre, qui évite de synchroniser chaque recherche ; blocs
+    // de la mémoire de travail puis de la mémoire haute, et octets de
+    // celles-ci appartenant à l'un d'eux, alloués au premier bloc
+    private final RomBlocks sharedRomBlocks;
+    private final Block[][] romBlocks = new Block[2 * MAX_BANKS][];
+    private Block[] ramBlocks;
+    private boolean[] ramCode;
+    private boolean hasRamBlocks;
+
+    private final int[] indices = new int[MAX_LENGTH];
+    private final int[] operands = new int[MAX_LENGTH];
+    private final int[] pcs = new int[MAX_LENGTH];
+    private final boolean[] fused = new boolean[MAX_LENGTH];
+
+    /**
+     * Construit un cache lisant le code sur le bus donné, la fonction donnée
+     * retournant la banque de mémoire morte visible à une adresse inférieure
+     * à 800016, ou -1 si le code qui s'y trouve ne doit pas être mis en cache
+     * (p.ex. celui de la mémoire de démarrage) ; les blocs de la mémoire
+     * morte sont partagés avec les autres caches de la mémoire morte donnée,
+     * ou propres à celui-ci si elle est nulle
+     *
+     * @param bus
+     * @param romBank
+     * @param rom
+     *            la mémoire morte visible sur le bus, ou null
+     * @throws NullPointerException
+     *             si le bus ou la fonction sont nuls
+     */
+    BlockCache(Bus bus, IntUnaryOperator romBank, Rom rom) {
+
+        this.bus = Objects.requireNonNull(bus);
+        this.romBank = Objects.requireNonNull(romBank);
+        if (rom == null) {
+            sharedRomBlocks = new RomBlocks();
+        } else {
+            synchronized (SHARED_ROM_BLOCKS) {
+                sharedRomBlocks = SHARED_ROM_BLOCKS.computeIfAbsent(rom,
+                        r -> new RomBlocks());
+            }
+        }
+    }
+
+    /**
+     * Retourne le bloc commençant à l'adresse donnée, en le traduisant s'il
+     * n'est pas encore dans le cache, ou null si le code à cette adresse ne
+     * peut pas être mis en cache
+     *
+     * @param pc
+     * @return le bloc, ou null
+     */
+    Block lookup(int pc) {
+
+        if (pc < ROM_END) {
+            int bank = romBank.applyAsInt(pc);
+            if (bank < 0 || bank >= MAX_BANKS)
+                return null;
+
+            int window = pc / ROM_BANK_SIZE;
+            int slot = 2 * bank + window;
+            Block[] blocks = romBlocks[slot];
+            if (blocks == null)
+                blocks = romBlocks[slot] = sharedRomBlocks.blocks(slot);
+            int i = pc % ROM_BANK_SIZE;
+            Block b = blocks[i];
+            if (b == null)
+                b = blocks[i] = translate(pc, (window + 1) * ROM_BANK_SIZE);
+            return b;
+        }
+
+        int end = ramEnd(pc);
+        if (end < 0)
+            return null;
+        if (ramBlocks == null) {
+            ramBlocks = new Block[RAM_SIZE];
+            ramCode = new boolean[RAM_SIZE];
+        }
+        int i = ramIndex(pc);
+        Block b = ramBlocks[i];
+        if (b == null) {
+            b = translate(pc, end);
+            if (b != null) {
+                ramBlocks[i] = b;
+                Arrays.fill(ramCode, i, i + b.end - pc, true);
+                hasRamBlocks = true;
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Signale une écriture du processeur à l'adresse donnée, et oublie les
+     * blocs de la mémoire vive si elle modifie l'un d'eux
+     *
+     * @param address
+     * @return vrai ssi l'écriture peut avoir modifié le code visible, soit
+     *         en changeant de banque de mémoire morte, soit en modifiant un
+     *         bloc de la mémoire vive
+     */
+    boolean written(int address) {
+
+        if (address < ROM_END)
+            return true;
+        if (!hasRamBlocks)
+            return false;
+        if (address >= AddressMap.ECHO_RAM_START
+                && address < AddressMap.ECHO_RAM_END)
+            address -= ECHO_OFFSET;
+        if (ramEnd(address) < 0 || !ramCode[ramIndex(address)])
+            return false;
+        clearRam();
+        return true;
+    }
+
+    /**
+     * Oublie les blocs de la mémoire vive, p.ex. après que son contenu ait
+     * été remplacé par celui d'un état
+     */
+    void clearRam() {
+
+        if (hasRamBlocks) {
+            Arrays.fill(ramBlocks, null);
+            Arrays.fill(ramCode, false);
+            hasRamBlocks = false;
+        }
+    }
+
+    // Fin de la région de mémoire vive contenant l'adresse donnée, ou -1 si
+    // son code ne peut pas être mis en cache
+    private static int ramEnd(int pc) {
+
+        if (pc >= AddressMap.WORK_RAM_START && pc < AddressMap.WORK_RAM_END)
+            return AddressMap.WORK_RAM_END;
+        if (pc >= AddressMap.HIGH_RAM_START && pc < AddressMap.HIGH_RAM_END)
+            return AddressMap.HIGH_RAM_END;
+        return -1;
+    }
+
+    // Index, dans les tables de la mémoire vive, de l'adresse donnée de la
+    // mémoire de travail ou de la mémoire haute
+    private static int ramIndex(int address) {
+
+        return address < AddressMap.WORK_RAM_END
+                ? address - AddressMap.WORK_RAM_START
+                : AddressMap.WORK_RAM_SIZE + address - AddressMap.HIGH_RAM_START;
+    }
+
+    // Traduit le bloc commençant à l'adresse donnée, dont aucune instruction
+    // ne dépasse la fin donnée, ou retourne null si sa première instruction
+    // n'est pas valide ou dépasse cette fin
+    private Block translate(int start, int end) {
+
+        int length = 0, pc = start;
+        while (length < MAX_LENGTH) {
+
+            int encoding = bus.read(pc);
+            int index = encoding;
+            if (encoding == 0xCB) {
+                if (pc + 1 >= end)
+                    break;
+                index = 0x100 | bus.read(pc + 1);
+            }
+            Opcode opcode = Cpu.opcode(index);
+            if (opcode == null || pc + opcode.totalBytes > end)
+                break;
+
+            int operand = NO_OPERAND;
+            if (opcode.kind == Opcode.Kind.DIRECT && opcode.totalBytes == 2)
+                operand = bus.read(pc + 1);
+            else if (opcode.totalBytes == 3)
+                operand = Bits.make16(bus.read(pc + 2), bus.read(pc + 1));
+
+            indices[length] = index;
+            operands[length] = operand;
+            fused[length] = fusesWithNext(opcode.family);
+            pcs[length++] = pc;
+            pc += opcode.totalBytes;
+
+            if (endsBlock(opcode.family))
+                break;
+        }
+
+        if (length == 0)
+            return null;
+        // La dernière instruction n'a pas de suivante dans le bloc
+        fused[length - 1] = false;
+        return new Block(Arrays.copyOf(indices, length),
+                Arrays.copyOf(operands, length), Arrays.copyOf(pcs, length),
+                Arrays.copyOf(fused, length), pc);
+    }
+
+    // Vrai ssi l'instruction n'écrit pas en mémoire, ne change pas l'état des
+    // interruptions et ne termine pas le bloc
+    private static boolean fusesWithNext(Opcode.Family family) {
+
+        switch (family) {
+        case LD_HLR_R8:
+        case LD_HLRU_A:
+        case LD_N8R_A:
+        case LD_CR_A:
+        case LD_N16R_A:
+        case LD_BCR_A:
+        case LD_DER_A:
+        case LD_HLR_N8:
+        case LD_N16R_SP:
+        case PUSH_R16:
+        case INC_HLR:
+        case DEC_HLR:
+        case ROTC_HLR:
+        case ROT_HLR:
+        case SWAP_HLR:
+        case SLA_HLR:
+        case SRA_HLR:
+        case SRL_HLR:
+        case CHG_U3_HLR:
+        case EDI:
+            return false;
+        default:
+            return !endsBlock(family);
+        }
+    }
+
+    private static boolean endsBlock(Opcode.Family family) {
+
+        switch (family) {
+        case JP_HL:
+        case JP_N16:
+        case JP_CC_N16:
+        case JR_E8:
+        case JR_CC_E8:
+        case CALL_N16:
+        case CALL_CC_N16:
+        case RST_U3:
+        case RET:
+        case RET_CC:
+        case RETI:
+        case HALT:
+        case STOP:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    // Tables des blocs d'une mémoire morte, par banque et fenêtre puis par
+    // adresse dans la fenêtre, allouées à la première recherche. Les blocs
+    // étant immuables, les caches de plusieurs fils peuvent les lire et les
+    // écrire sans synchronisation, au pire en traduisant deux fois le même
+    private static final class RomBlocks {
+
+        private final Block[][] blocks = new Block[2 * MAX_BANKS][];
+
+        synchronized Block[] blocks(int slot) {
+
+            if (blocks[slot] == null)
+                blocks[slot] = new Block[ROM_BANK_SIZE];
+            return blocks[slot];
+        }
+    }
+
+    /**
+     * Bloc de base traduit : pour chaque instruction, son index dans les
+     * tables du processeur, son opérande (ou NO_OPERAND), son adresse et si
+     * elle est fusionnée avec la suivante
+     */
+    static final class Block {
+
+        final int[] indices, operands, pcs;
+        final boolean[] fused;
+        final int length, end;
+
+        private Block(int[] indices, int[] operands, int[] pcs,
+                boolean[] fused, int end) {
+
+            this.indices = indices;
+            this.operands = operands;
+            this.pcs = pcs;
+            this.fused = fused;
+            this.length = indices.length;
+            this.end = end;
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package ch.epfl.gameboj.component.cpu;
 
+import java.nio.ByteBuffer;
+import java.util.function.IntUnaryOperator;
+
 import ch.epfl.gameboj.*;
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.PerformanceCounters;
+import ch.epfl.gameboj.Profiler;
 import ch.epfl.gameboj.Register;
-import ch.epfl.gameboj.RegisterFile;
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.Rom;
 
-public final class Cpu implements Clocked, Component {
+public final class Cpu implements Clocked, Component, Stateful {
 
 	private enum Reg implements Register {
 		A, F, B, C, D, E, H, L
@@ -29,882 +35,759 @@ public final class Cpu implements Clocked, Component {
 		VBLANK, LCD_STAT, TIMER, SERIAL, JOYPAD
 	}
 
-	private final RegisterFile<Reg> registerFile = new RegisterFile<>(Reg.values());
-	private int PC = 0, SP = 0, IE = 0, IF = 0;
-	private long nextNonIdleCycle = 0;
-	private boolean IME = false;
-
-	private static final Opcode[] DIRECT_OPCODE_TABLE = buildOpcodeTable(Opcode.Kind.DIRECT);
-	private static final Opcode[] PREFIXED_OPCODE_TABLE = buildOpcodeTable(Opcode.Kind.PREFIXED);
-
-	private Bus bus;
-	private Ram highRam = new Ram(AddressMap.HIGH_RAM_SIZE);
-
-	@Override
-	public void cycle(long cycle) {
-
-		if (nextNonIdleCycle == Long.MAX_VALUE && Integer.lowestOneBit(IE & IF) != 0) {
-			nextNonIdleCycle = cycle;
-		}
-
-		if (cycle < nextNonIdleCycle) {
-			return;
-		}
-		reallyCycle();
-	}
-
-	@Override
-	public int read(int address) {
-
-		Preconditions.checkBits16(address);
-
-		if (address == AddressMap.REG_IF) {
-			return IF;
-
-		} else if (address == AddressMap.REG_IE) {
-			return IE;
-
-		} else if (address >= AddressMap.HIGH_RAM_START && address < AddressMap.HIGH_RAM_END) {
-			return highRam.read(address - AddressMap.HIGH_RAM_START);
-		}
-
-		return NO_DATA;
-	}
-
-	@Override
-	public void write(int address, int data) {
-
-		Preconditions.checkBits16(address);
-		Preconditions.checkBits8(data);
-
-		if (address == AddressMap.REG_IF) {
-			IF = data;
-
-		} else if (address == AddressMap.REG_IE) {
-			IE = data;
-
-		} else if (address >= AddressMap.HIGH_RAM_START && address < AddressMap.HIGH_RAM_END) {
-			highRam.write(address - AddressMap.HIGH_RAM_START, data);
-		}
-	}
-
-	@Override
-	public void attachTo(Bus bus) {
-		this.bus = bus;
-		bus.attach(this);
-	}
-
 	/**
-	 * Lève l'interruption donnée, c-à-d met à 1 le bit correspondant dans le
-	 * registre IF
-	 * 
-	 * @param i
+	 * Exécute une instruction dont les opérandes ont été extraits de l'encodage
+	 * lors de la construction de la table des gestionnaires
 	 */
-	public void requestInterrupt(Interrupt i) {
-
-		IF = Bits.set(IF, i.index(), true);
+	@FunctionalInterface
+	private interface Handler {
+		void execute(Cpu cpu);
 	}
 
 	/**
-	 * Retourne un tableau contenant, dans l'ordre, la valeur des registres PC, SP,
-	 * A, F, B, C, D, E, H et L
-	 * 
-	 * @return
+	 * Lit un registre 8 bits, choisi lors de la construction de la table des
+	 * gestionnaires
 	 */
-	public int[] _testGetPcSpAFBCDEHL() {
-
-		int values[] = { PC, SP, registerFile.get(Reg.A), registerFile.get(Reg.F), registerFile.get(Reg.B),
-				registerFile.get(Reg.C), registerFile.get(Reg.D), registerFile.get(Reg.E), registerFile.get(Reg.H),
-				registerFile.get(Reg.L) };
-
-		return values;
-	}
-
-	private static Opcode[] buildOpcodeTable(Opcode.Kind k) {
-
-		Opcode[] ans = new Opcode[256];
-
-		for (Opcode o : Opcode.values()) {
-
-			if (o.kind == k) {
-				ans[o.encoding] = o;
-			}
-		}
-
-		return ans;
+	@FunctionalInterface
+	private interface RegReader {
+		int read(Cpu cpu);
 	}
 
-	private void reallyCycle() {
-
-		int k = Integer.lowestOneBit(IE & IF);
-
-		if (k == 0 || !IME) {
-			dispatch(read8(PC));
-
-		} else {
-			IME = false;
-			IF = Bits.set(IF, Integer.SIZE - Integer.numberOfLeadingZeros(k) - 1, false);
-			push16(PC);
-			PC = AddressMap.INTERRUPTS[Integer.SIZE - Integer.numberOfLeadingZeros(k) - 1];
-			nextNonIdleCycle += 5;
-		}
-
+	/**
+	 * Écrit un registre 8 bits, choisi lors de la construction de la table des
+	 * gestionnaires
+	 */
+	@FunctionalInterface
+	private interface RegWriter {
+		void write(Cpu cpu, int newV);
 	}
 
-	private void dispatch(int encoding) {
-
-		Opcode opcode = (encoding == 0xCB) ? PREFIXED_OPCODE_TABLE[read8AfterOpcode()] : DIRECT_OPCODE_TABLE[encoding];
-
-		int nextPC = Bits.clip(16, PC + opcode.totalBytes);
-
-		if (opcode.family == Opcode.Family.NOP) {
-
-			PC = nextPC;
-			nextNonIdleCycle += opcode.cycles;
-			return;
-
-		}
-
-		switch (opcode.family) {
-
-		case NOP: {
-		}
-			break;
-		case LD_R8_HLR: {
-
-			registerFile.set(extractReg(opcode, 3), read8AtHl());
-
-		}
-			break;
-		case LD_A_HLRU: {
-
-			registerFile.set(Reg.A, read8AtHl());
-			setReg16(Reg16.HL, reg16(Reg16.HL) + extractHlIncrement(opcode));
-
-		}
-			break;
-		case LD_A_N8R: {
-
-			int n8 = read8AfterOpcode();
-			registerFile.set(Reg.A, read8(Bits.clip(16, AddressMap.REGS_START + n8)));
-
-		}
-			break;
-		case LD_A_CR: {
-
-			registerFile.set(Reg.A, read8(AddressMap.REGS_START + registerFile.get(Reg.C)));
-
-		}
-			break;
-		case LD_A_N16R: {
-
-			int n16 = read16AfterOpcode();
-			registerFile.set(Reg.A, this.read8(n16));
-
-		}
-			break;
-		case LD_A_BCR: {
-
-			registerFile.set(Reg.A, read8(reg16(Reg16.BC)));
-
-		}
-			break;
-		case LD_A_DER: {
-
-			registerFile.set(Reg.A, read8(reg16(Reg16.DE)));
-
-		}
-			break;
-		case LD_R8_N8: {
-
-			Reg r8 = this.extractReg(opcode, 3);
-			int n8 = read8AfterOpcode();
-			registerFile.set(r8, n8);
-
-		}
-			break;
-		case LD_R16SP_N16: {
-
-			Reg16 r16 = this.extractReg16(opcode);
-			int n16 = this.read16AfterOpcode();
-			this.setReg16SP(r16, n16);
-
-		}
-			break;
-		case POP_R16: {
-
-			Reg16 r16 = this.extractReg16(opcode);
-			this.setReg16(r16, this.pop16());
-
-		}
-			break;
-		case LD_HLR_R8: {
-
-			Reg r8 = this.extractReg(opcode, 0);
-			this.write8AtHl(registerFile.get(r8));
-
-		}
-			break;
-		case LD_HLRU_A: {
-
-			this.write8AtHl(registerFile.get(Reg.A));
-			this.setReg16(Reg16.HL, this.reg16(Reg16.HL) + this.extractHlIncrement(opcode));
-
-		}
-			break;
-		case LD_N8R_A: {
-
-			int n8 = this.read8AfterOpcode();
-			this.write8(AddressMap.REGS_START + n8, registerFile.get(Reg.A));
-
-		}
-			break;
-		case LD_CR_A: {
-
-			this.write8(AddressMap.REGS_START + registerFile.get(Reg.C), registerFile.get(Reg.A));
-
-		}
-			break;
-		case LD_N16R_A: {
-
-			int n16 = this.read16AfterOpcode();
-			this.write8(n16, registerFile.get(Reg.A));
-
-		}
-			break;
-		case LD_BCR_A: {
-
-			this.write8(reg16(Reg16.BC), registerFile.get(Reg.A));
-
-		}
-			break;
-		case LD_DER_A: {
-
-			this.write8(reg16(Reg16.DE), registerFile.get(Reg.A));
-
-		}
-			break;
-		case LD_HLR_N8: {
-
-			int n8 = this.read8AfterOpcode();
-			this.write8AtHl(n8);
-
-		}
-			break;
-		case LD_N16R_SP: {
-
-			int n16 = this.read16AfterOpcode();
-			this.write16(n16, SP);
-
-		}
-			break;
-		case LD_R8_R8: {
-
-			Reg r = this.extractReg(opcode, 3);
-			Reg s = this.extractReg(opcode, 0);
-			registerFile.set(r, registerFile.get(s));
-
-		}
-			break;
-		case LD_SP_HL: {
-
-			SP = reg16(Reg16.HL);
-
-		}
-			break;
-		case PUSH_R16: {
-
-			Reg16 r16 = this.extractReg16(opcode);
-			this.push16(reg16(r16));
-
-		}
-			break;
-
-		// Add
-		case ADD_A_R8: {
-
-			boolean c = Bits.test(opcode.encoding, 3) && Bits.test(registerFile.get(Reg.F), Alu.Flag.C);
-
-			Reg r8 = this.extractReg(opcode, 0);
-			int vf = Alu.add(registerFile.get(Reg.A), registerFile.get(r8), c);
-
-			setRegFromAlu(Reg.A, vf);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
-
-		}
-			break;
-
-		case ADD_A_N8: {
-
-			boolean c = Bits.test(opcode.encoding, 3) && Bits.test(registerFile.get(Reg.F), Alu.Flag.C);
-
-			int n8 = this.read8AfterOpcode();
-			int vf = Alu.add(registerFile.get(Reg.A), n8, c);
-			setRegFromAlu(Reg.A, vf);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
-
-		}
-			break;
-
-		case ADD_A_HLR: {
-
-			boolean c = Bits.test(opcode.encoding, 3) && Bits.test(registerFile.get(Reg.F), Alu.Flag.C);
-
-			int n8 = this.read8AtHl();
-			int vf = Alu.add(registerFile.get(Reg.A), n8, c);
-			setRegFromAlu(Reg.A, vf);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
-
-		}
-			break;
-
-		case INC_R8: {
-
-			Reg r = this.extractReg(opcode, 3);
-			int vf = Alu.add(registerFile.get(r), 1);
-			setRegFromAlu(r, vf);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.CPU);
-
-		}
-			break;
-
-		case INC_HLR: {
-
-			int vf = Alu.add(this.read8AtHl(), 1);
-			this.write8AtHl(Alu.unpackValue(vf));
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.CPU);
-
-		}
-			break;
-
-		case INC_R16SP: {
-
-			Reg16 r = this.extractReg16(opcode);
-			int vf = (r == Reg16.AF) ? Alu.add16L(SP, 1) : Alu.add16L(reg16(r), 1);
-			this.setReg16SP(r, Alu.unpackValue(vf));
-
-		}
-			break;
-
-		case ADD_HL_R16SP: {
-
-			Reg16 r = this.extractReg16(opcode);
-			int vf = (r == Reg16.AF) ? Alu.add16H(SP, reg16(Reg16.HL)) : Alu.add16H(reg16(r), reg16(Reg16.HL));
-			this.setReg16(Reg16.HL, Alu.unpackValue(vf));
-			this.combineAluFlags(vf, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
-
-		}
-			break;
-
-		case LD_HLSP_S8: {
-
-			int e = this.read8AfterOpcode();
-			e = Bits.signExtend8(e);
-			e = Bits.clip(16, e);
-
-			int vf = Alu.add16L(SP, e);
-			this.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
-
-			if (Bits.test(opcode.encoding, 4)) {
-				this.setReg16(Reg16.HL, Alu.unpackValue(vf));
-			} else {
-				SP = Alu.unpackValue(vf);
-			}
-
-		}
-			break;
-
-		// Subtract
-		case SUB_A_R8: {
-
-			boolean c = Bits.test(opcode.encoding, 3) && Bits.test(registerFile.get(Reg.F), Alu.Flag.C);
-
-			Reg r = this.extractReg(opcode, 0);
-			int vf = Alu.sub(registerFile.get(Reg.A), registerFile.get(r), c);
-			setRegFromAlu(Reg.A, vf);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.ALU);
-
-		}
-			break;
-
-		case SUB_A_N8: {
-
-			boolean c = Bits.test(opcode.encoding, 3) && Bits.test(registerFile.get(Reg.F), Alu.Flag.C);
-
-			int n8 = this.read8AfterOpcode();
-			int vf = Alu.sub(registerFile.get(Reg.A), n8, c);
-			setRegFromAlu(Reg.A, vf);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.ALU);
-
-		}
-			break;
-
-		case SUB_A_HLR: {
-
-			boolean c = Bits.test(opcode.encoding, 3) && Bits.test(registerFile.get(Reg.F), Alu.Flag.C);
-
-			int hl = this.read8AtHl();
-			int vf = Alu.sub(registerFile.get(Reg.A), hl, c);
-			setRegFromAlu(Reg.A, vf);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.ALU);
-
-		}
-			break;
-
-		case DEC_R8: {
-
-			Reg r = this.extractReg(opcode, 3);
-			int vf = Alu.sub(registerFile.get(r), 1);
-			setRegFromAlu(r, vf);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.CPU);
-
-		}
-			break;
-
-		case DEC_HLR: {
-
-			int vf = Alu.sub(this.read8AtHl(), 1);
-			this.write8AtHl(Alu.unpackValue(vf));
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.CPU);
-
-		}
-			break;
-
-		case CP_A_R8: {
-
-			Reg r = this.extractReg(opcode, 0);
-			int vf = Alu.sub(registerFile.get(Reg.A), registerFile.get(r));
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.ALU);
-
-		}
-			break;
-
-		case CP_A_N8: {
-
-			int n8 = this.read8AfterOpcode();
-			int vf = Alu.sub(registerFile.get(Reg.A), n8);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.ALU);
-
-		}
-			break;
-
-		case CP_A_HLR: {
-
-			int hl = this.read8AtHl();
-			int vf = Alu.sub(registerFile.get(Reg.A), hl);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.ALU);
-
-		}
-			break;
-
-		case DEC_R16SP: {
-
-			Reg16 r = this.extractReg16(opcode);
-			int vf = (r == Reg16.AF) ? Alu.add16L(SP, Bits.clip(16, -1)) : Alu.add16L(reg16(r), Bits.clip(16, -1));
-			setReg16SP(r, Alu.unpackValue(vf));
-
-		}
-			break;
-
-		// And, or, xor, complement
-		case AND_A_N8: {
-
-			int n8 = this.read8AfterOpcode();
-			int vf = Alu.and(registerFile.get(Reg.A), n8);
-			setRegFlags(Reg.A, vf);
-
-		}
-			break;
-
-		case AND_A_R8: {
-
-			Reg r = this.extractReg(opcode, 0);
-			int vf = Alu.and(registerFile.get(Reg.A), registerFile.get(r));
-			setRegFlags(Reg.A, vf);
-
-		}
-			break;
-
-		case AND_A_HLR: {
-
-			int vf = Alu.and(registerFile.get(Reg.A), this.read8AtHl());
-			setRegFlags(Reg.A, vf);
-
-		}
-			break;
-
-		case OR_A_R8: {
-
-			Reg r = this.extractReg(opcode, 0);
-			int vf = Alu.or(registerFile.get(Reg.A), registerFile.get(r));
-			setRegFlags(Reg.A, vf);
-
-		}
-			break;
-
-		case OR_A_N8: {
-
-			int n8 = this.read8AfterOpcode();
-			int vf = Alu.or(registerFile.get(Reg.A), n8);
-			setRegFlags(Reg.A, vf);
-
-		}
-			break;
-
-		case OR_A_HLR: {
-
-			int vf = Alu.or(registerFile.get(Reg.A), this.read8AtHl());
-			setRegFlags(Reg.A, vf);
-
-		}
-			break;
-
-		case XOR_A_R8: {
-
-			Reg r = this.extractReg(opcode, 0);
-			int vf = Alu.xor(registerFile.get(Reg.A), registerFile.get(r));
-			setRegFlags(Reg.A, vf);
-
-		}
-			break;
-
-		case XOR_A_N8: {
-
-			int n8 = this.read8AfterOpcode();
-			int vf = Alu.xor(registerFile.get(Reg.A), n8);
-			setRegFlags(Reg.A, vf);
-
-		}
-			break;
-
-		case XOR_A_HLR: {
-
-			int vf = Alu.xor(registerFile.get(Reg.A), this.read8AtHl());
-			setRegFlags(Reg.A, vf);
-
-		}
-			break;
-
-		case CPL: {
-
-			int vf = Alu.xor(registerFile.get(Reg.A), Bits.clip(8, -1));
-			this.setRegFromAlu(Reg.A, vf);
-			this.combineAluFlags(vf, FlagSrc.CPU, FlagSrc.V1, FlagSrc.V1, FlagSrc.CPU);
-
-		}
-			break;
-
-		// Rotate, shift
-		case ROTCA: {
-
-			Alu.RotDir r = extractDir(opcode);
-			int vf = Alu.rotate(r, registerFile.get(Reg.A));
-			this.setRegFromAlu(Reg.A, vf);
-			this.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
-
-		}
-			break;
-
-		case ROTA: {
-
-			Alu.RotDir r = extractDir(opcode);
-			int vf = Alu.rotate(r, registerFile.get(Reg.A), Bits.test(registerFile.get(Reg.F), Alu.Flag.C));
-			this.setRegFromAlu(Reg.A, vf);
-			this.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
-
-		}
-			break;
-
-		case ROTC_R8: {
-
-			Reg r8 = this.extractReg(opcode, 0);
-			Alu.RotDir r = extractDir(opcode);
-			int vf = Alu.rotate(r, registerFile.get(r8));
-			this.setRegFlags(r8, vf);
-
-		}
-			break;
-
-		case ROT_R8: {
-
-			Reg r8 = this.extractReg(opcode, 0);
-			Alu.RotDir r = extractDir(opcode);
-			int vf = Alu.rotate(r, registerFile.get(r8), Bits.test(registerFile.get(Reg.F), Alu.Flag.C));
-			this.setRegFlags(r8, vf);
+	private int A = 0, F = 0, B = 0, C = 0, D = 0, E = 0, H = 0, L = 0;
+	private int PC = 0, SP = 0, IE = 0, IF = 0;
+	private int nextPC = 0;
+	private long nextNonIdleCycle = 0, currentCycle = -1, stepLimit = 0;
+	private boolean IME = false, ioWritten = false;
+
+	private static final Reg[] REG_OPERANDS = { Reg.B, Reg.C, Reg.D, Reg.E, Reg.H, Reg.L, null, Reg.A };
+	private static final Reg16[] REG16_OPERANDS = { Reg16.BC, Reg16.DE, Reg16.HL, Reg16.AF };
+
+	private static final int ADD_FLAGS = flagMasks(FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
+	private static final int INC_FLAGS = flagMasks(FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.CPU);
+	private static final int ADD_HL_FLAGS = flagMasks(FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
+	private static final int ADD_SP_FLAGS = flagMasks(FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
+	private static final int SUB_FLAGS = flagMasks(FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.ALU);
+	private static final int DEC_FLAGS = flagMasks(FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.CPU);
+	private static final int CPL_FLAGS = flagMasks(FlagSrc.CPU, FlagSrc.V1, FlagSrc.V1, FlagSrc.CPU);
+	private static final int ROTA_FLAGS = flagMasks(FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
+	private static final int BIT_FLAGS = flagMasks(FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1, FlagSrc.CPU);
+	private static final int DAA_FLAGS = flagMasks(FlagSrc.ALU, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU);
+	private static final int SCCF_FLAGS = flagMasks(FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
+
+	// Tables indexées par l'encodage de l'opcode, augmenté de 256 pour les
+	// opcodes préfixés
+	private static final Opcode[] OPCODE_TABLE = buildOpcodeTable();
+	private static final Handler[] HANDLER_TABLE = buildHandlerTable();
 
-		}
-			break;
+	private Bus bus;
+	private PerformanceCounters counters;
+	private Profiler profiler;
 
-		case ROTC_HLR: {
+	// Cache des blocs traduits, nul si la traduction est désactivée, bloc en
+	// cours d'exécution et index de sa prochaine instruction, et opérande de
+	// l'instruction courante lorsqu'elle provient d'un bloc
+	private BlockCache blocks;
+	private BlockCache.Block block;
+	private int blockIndex;
+	private int operand = BlockCache.NO_OPERAND;
 
-			Alu.RotDir r = extractDir(opcode);
-			int vf = Alu.rotate(r, this.read8AtHl());
-			this.write8AtHlAndSetFlags(vf);
+	private Ram highRam = new Ram(AddressMap.HIGH_RAM_SIZE);
 
-		}
-			break;
+	@Override
+	public void cycle(long cycle) {
 
-		case ROT_HLR: {
+		step(cycle, 1);
+	}
 
-			Alu.RotDir r = extractDir(opcode);
-			int vf = Alu.rotate(r, this.read8AtHl(), Bits.test(registerFile.get(Reg.F), Alu.Flag.C));
-			this.write8AtHlAndSetFlags(vf);
+	/**
+	 * Simule le processeur durant au plus le nombre de cycles donné à partir du
+	 * cycle donné, en exécutant d'un coup toutes les instructions qui débutent
+	 * avant la fin de ce budget, ce qui équivaut à appeler cycle pour chacun de
+	 * ces cycles ; s'arrête toutefois juste après une instruction ayant écrit
+	 * dans un registre d'entrée/sortie, puisque cette écriture peut modifier le
+	 * prochain événement des autres composants. Lève l'exception
+	 * IllegalArgumentException si le budget n'est pas strictement positif
+	 * 
+	 * @param cycle
+	 * @param budget
+	 * @return le nombre de cycles effectivement simulés
+	 * @throws IllegalArgumentException
+	 */
+	public long step(long cycle, long budget) {
 
-		}
-			break;
+		Preconditions.checkArgument(budget > 0);
 
-		case SWAP_R8: {
+		long limit = cycle + budget;
+		stepLimit = limit;
+		ioWritten = false;
 
-			Reg r8 = this.extractReg(opcode, 0);
-			int vf = Alu.swap(registerFile.get(r8));
-			this.setRegFlags(r8, vf);
+		for (long c = cycle; ; ++c) {
 
-		}
-			break;
+			if (nextNonIdleCycle == Long.MAX_VALUE && (IE & IF) != 0) {
+				nextNonIdleCycle = c;
+			}
 
-		case SWAP_HLR: {
+			c = Math.max(c, nextNonIdleCycle);
+			if (c >= limit) {
+				return budget;
+			}
 
-			int vf = Alu.swap(this.read8AtHl());
-			this.write8AtHlAndSetFlags(vf);
+			currentCycle = c;
+			reallyCycle();
 
+			// Les instructions fusionnées ont pu avancer le cycle courant
+			if (ioWritten) {
+				return currentCycle + 1 - cycle;
+			}
+			c = currentCycle;
 		}
-			break;
+	}
 
-		case SLA_R8: {
+	/**
+	 * Retourne l'index du cycle durant lequel le processeur a exécuté sa
+	 * dernière instruction, ou -1 s'il n'en a encore exécuté aucune
+	 * 
+	 * @return le cycle courant du processeur
+	 */
+	public long currentCycle() {
 
-			Reg r = this.extractReg(opcode, 0);
+		return currentCycle;
+	}
 
-			int vf = Alu.shiftLeft(registerFile.get(r));
-			this.setRegFlags(r, vf);
+	@Override
+	public int read(int address) {
 
-		}
-			break;
+		Preconditions.checkBits16(address);
 
-		case SRA_R8: {
+		if (address == AddressMap.REG_IF) {
+			return IF;
 
-			Reg r = this.extractReg(opcode, 0);
-			int vf = Alu.shiftRightA(registerFile.get(r));
-			this.setRegFlags(r, vf);
+		} else if (address == AddressMap.REG_IE) {
+			return IE;
 
+		} else if (address >= AddressMap.HIGH_RAM_START && address < AddressMap.HIGH_RAM_END) {
+			return highRam.read(address - AddressMap.HIGH_RAM_START);
 		}
-			break;
 
-		case SRL_R8: {
+		return NO_DATA;
+	}
 
-			Reg r = this.extractReg(opcode, 0);
-			int vf = Alu.shiftRightL(registerFile.get(r));
-			this.setRegFlags(r, vf);
+	@Override
+	public void write(int address, int data) {
 
-		}
-			break;
+		Preconditions.checkBits16(address);
+		Preconditions.checkBits8(data);
 
-		case SLA_HLR: {
+		if (address == AddressMap.REG_IF) {
+			IF = data;
 
-			int hl = this.read8AtHl();
-			int vf = Alu.shiftLeft(hl);
-			write8AtHlAndSetFlags(vf);
+		} else if (address == AddressMap.REG_IE) {
+			IE = data;
 
+		} else if (address >= AddressMap.HIGH_RAM_START && address < AddressMap.HIGH_RAM_END) {
+			highRam.write(address - AddressMap.HIGH_RAM_START, data);
 		}
-			break;
-
-		case SRA_HLR: {
-
-			int hl = this.read8AtHl();
-			int vf = Alu.shiftRightA(hl);
-			write8AtHlAndSetFlags(vf);
+	}
 
-		}
-			break;
+	@Override
+	public void attachTo(Bus bus) {
+		this.bus = bus;
+		bus.attach(this);
+	}
 
-		case SRL_HLR: {
+	@Override
+	public int[] addressRanges() {
 
-			int hl = this.read8AtHl();
-			int vf = Alu.shiftRightL(hl);
-			write8AtHlAndSetFlags(vf);
+		return new int[] { AddressMap.REG_IF, AddressMap.REG_IF + 1, AddressMap.HIGH_RAM_START,
+				AddressMap.HIGH_RAM_END, AddressMap.REG_IE, AddressMap.REG_IE + 1 };
+	}
 
-		}
-			break;
+	/**
+	 * Rend l'état du processeur égal à celui du processeur donné, sa mémoire
+	 * haute étant partagée jusqu'à la première écriture
+	 * 
+	 * @param that
+	 */
+	public void copyStateFrom(Cpu that) {
+
+		A = that.A;
+		F = that.F;
+		B = that.B;
+		C = that.C;
+		D = that.D;
+		E = that.E;
+		H = that.H;
+		L = that.L;
+		PC = that.PC;
+		SP = that.SP;
+		IE = that.IE;
+		IF = that.IF;
+		nextNonIdleCycle = that.nextNonIdleCycle;
+		currentCycle = that.currentCycle;
+		IME = that.IME;
+		highRam.copyStateFrom(that.highRam);
+		forgetRamBlocks();
+	}
 
-		// Bit test and set
-		case BIT_U3_R8: {
+	/**
+	 * L'état comprend les registres 8 bits, IE et IF sur un octet chacun, PC et
+	 * SP sur deux, les cycles sur huit, IME et la mémoire haute
+	 */
+	@Override
+	public int stateSize() {
 
-			int b = this.extractBits(opcode);
-			Reg r8 = this.extractReg(opcode, 0);
+		return 10 + 2 * Short.BYTES + 2 * Long.BYTES + 1 + highRam.stateSize();
+	}
 
-			this.combineAluFlags(Alu.testBit(registerFile.get(r8), b), FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1,
-					FlagSrc.CPU);
+	@Override
+	public void saveState(ByteBuffer buffer) {
+
+		buffer.put((byte) A).put((byte) F).put((byte) B).put((byte) C)
+				.put((byte) D).put((byte) E).put((byte) H).put((byte) L)
+				.put((byte) IE).put((byte) IF);
+		buffer.putShort((short) PC).putShort((short) SP);
+		buffer.putLong(nextNonIdleCycle).putLong(currentCycle);
+		buffer.put((byte) (IME ? 1 : 0));
+		highRam.saveState(buffer);
+	}
 
-		}
-			break;
+	@Override
+	public void loadState(ByteBuffer buffer) {
+
+		A = Byte.toUnsignedInt(buffer.get());
+		F = Byte.toUnsignedInt(buffer.get());
+		B = Byte.toUnsignedInt(buffer.get());
+		C = Byte.toUnsignedInt(buffer.get());
+		D = Byte.toUnsignedInt(buffer.get());
+		E = Byte.toUnsignedInt(buffer.get());
+		H = Byte.toUnsignedInt(buffer.get());
+		L = Byte.toUnsignedInt(buffer.get());
+		IE = Byte.toUnsignedInt(buffer.get());
+		IF = Byte.toUnsignedInt(buffer.get());
+		PC = Short.toUnsignedInt(buffer.getShort());
+		SP = Short.toUnsignedInt(buffer.getShort());
+		nextNonIdleCycle = buffer.getLong();
+		currentCycle = buffer.getLong();
+		IME = buffer.get() != 0;
+		highRam.loadState(buffer);
+		forgetRamBlocks();
+	}
 
-		case BIT_U3_HLR: {
+	/**
+	 * Lève l'interruption donnée, c-à-d met à 1 le bit correspondant dans le
+	 * registre IF
+	 * 
+	 * @param i
+	 */
+	public void requestInterrupt(Interrupt i) {
 
-			int b = this.extractBits(opcode);
-			this.combineAluFlags(Alu.testBit(this.read8AtHl(), b), FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1, FlagSrc.CPU);
+		IF = Bits.set(IF, i.index(), true);
+	}
 
-		}
-			break;
+	/**
+	 * Définit les compteurs de performance auxquels chaque instruction exécutée
+	 * et chaque interruption traitée est signalée, ou aucun s'ils sont nuls
+	 * 
+	 * @param counters
+	 */
+	public void setCounters(PerformanceCounters counters) {
 
-		case CHG_U3_R8: {
+		this.counters = counters;
+	}
 
-			int b = this.extractBits(opcode);
-			Reg r8 = this.extractReg(opcode, 0);
-			registerFile.set(r8, Bits.set(registerFile.get(r8), b, Bits.test(opcode.encoding, 6)));
+	/**
+	 * Définit le profileur auquel chaque instruction exécutée et chaque
+	 * interruption traitée est signalée, avec son adresse et sa durée, ou
+	 * aucun s'il est nul
+	 * 
+	 * @param profiler
+	 */
+	public void setProfiler(Profiler profiler) {
 
-		}
-			break;
+		this.profiler = profiler;
+	}
 
-		case CHG_U3_HLR: {
+	/**
+	 * Active la traduction du code en blocs de base, ou la désactive si la
+	 * fonction donnée est nulle. Une fois traduit, un bloc est exécuté sans
+	 * relire ses opcodes ni ses opérandes sur le bus, ces lectures n'étant
+	 * alors pas signalées aux compteurs de performance ; le comportement du
+	 * processeur, cycle par cycle, est sinon le même que sans traduction.
+	 * La fonction donnée retourne la banque de mémoire morte visible à une
+	 * adresse inférieure à 800016, ou -1 si le code qui s'y trouve ne doit
+	 * pas être mis en cache
+	 * 
+	 * Seul le code de la mémoire morte, de la mémoire de travail et de la
+	 * mémoire haute est traduit, aucun autre composant que le processeur
+	 * n'écrivant dans ces deux dernières
+	 * 
+	 * @param romBank
+	 *            la banque visible à une adresse, ou null
+	 */
+	public void setTranslation(IntUnaryOperator romBank) {
 
-			int b = this.extractBits(opcode);
-			this.write8AtHl(Bits.set(read8AtHl(), b, Bits.test(opcode.encoding, 6)));
+		setTranslation(romBank, null);
+	}
 
-		}
-			break;
+	/**
+	 * Active la traduction du code en blocs de base, ou la désactive si la
+	 * fonction donnée est nulle, comme setTranslation(romBank), les blocs de
+	 * la mémoire morte donnée, visible sur le bus, étant partagés avec tous
+	 * les processeurs qui la traduisent, p.ex. ceux de plusieurs Game Boy
+	 * simulant le même jeu
+	 * 
+	 * @param romBank
+	 *            la banque visible à une adresse, ou null
+	 * @param rom
+	 *            la mémoire morte de la cartouche, ou null pour ne pas
+	 *            partager les blocs
+	 */
+	public void setTranslation(IntUnaryOperator romBank, Rom rom) {
 
-		// Misc. ALU
-		case DAA: {
+		blocks = romBank == null ? null : new BlockCache(bus, romBank, rom);
+		block = null;
+	}
 
-			boolean n = Bits.test(registerFile.get(Reg.F), Alu.Flag.N);
-			boolean h = Bits.test(registerFile.get(Reg.F), Alu.Flag.H);
-			boolean c = Bits.test(registerFile.get(Reg.F), Alu.Flag.C);
+	/**
+	 * Retourne un tableau contenant, dans l'ordre, la valeur des registres PC, SP,
+	 * A, F, B, C, D, E, H et L
+	 * 
+	 * @return
+	 */
+	public int[] _testGetPcSpAFBCDEHL() {
 
-			int vf = Alu.bcdAdjust(registerFile.get(Reg.A), n, h, c);
-			this.setRegFromAlu(Reg.A, vf);
-			this.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU);
+		int values[] = { PC, SP, A, F, B, C, D, E, H, L };
 
-		}
-			break;
+		return values;
+	}
 
-		case SCCF: {
+	private static Opcode[] buildOpcodeTable() {
 
-			boolean c = !(Bits.test(registerFile.get(Reg.F), Alu.Flag.C) && Bits.test(opcode.encoding, 3));
-			this.combineAluFlags(Bits.set(0, Alu.Flag.C.index(), c), FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
+		Opcode[] ans = new Opcode[2 * 256];
 
+		for (Opcode o : Opcode.values()) {
+			ans[tableIndex(o)] = o;
 		}
-			break;
 
-		// Jumps
-		case JP_HL: {
+		return ans;
+	}
+
+	private static Handler[] buildHandlerTable() {
 
-			nextPC = reg16(Reg16.HL);
+		Handler[] ans = new Handler[2 * 256];
 
+		for (Opcode o : Opcode.values()) {
+			ans[tableIndex(o)] = handlerFor(o);
 		}
-			break;
-		case JP_N16: {
 
-			nextPC = read16AfterOpcode();
+		return ans;
+	}
 
-		}
-			break;
-		case JP_CC_N16: {
+	static Opcode opcode(int index) {
 
-			if (extractCondition(opcode)) {
-				nextPC = read16AfterOpcode();
-				nextNonIdleCycle += opcode.additionalCycles;
-			}
+		return OPCODE_TABLE[index];
+	}
 
-		}
-			break;
-		case JR_E8: {
+	private static int tableIndex(Opcode o) {
 
-			int e = this.read8AfterOpcode();
-			e = Bits.signExtend8(e);
-			nextPC = Bits.clip(16, nextPC + e);
+		return o.kind == Opcode.Kind.PREFIXED ? 0x100 | o.encoding : o.encoding;
+	}
 
-		}
-			break;
-		case JR_CC_E8: {
+	private void reallyCycle() {
 
-			if (this.extractCondition(opcode)) {
+		int k = Integer.lowestOneBit(IE & IF);
 
-				int e = this.read8AfterOpcode();
-				e = Bits.signExtend8(e);
-				nextPC = Bits.clip(16, nextPC + e);
-				nextNonIdleCycle += opcode.additionalCycles;
+		if (k == 0 || !IME) {
+			if (blocks == null) {
+				dispatch(read8(PC));
+			} else {
+				dispatchCached();
 			}
 
+		} else {
+			int i = Integer.SIZE - Integer.numberOfLeadingZeros(k) - 1;
+			IME = false;
+			IF = Bits.set(IF, i, false);
+			push16(PC);
+			PC = AddressMap.INTERRUPTS[i];
+			nextNonIdleCycle += 5;
+			if (counters != null) {
+				counters.interruptServiced(i);
+			}
+			if (profiler != null) {
+				profiler.interruptServiced(PC, 5, SP);
+			}
 		}
-			break;
 
-		// Calls and returns
-		case CALL_N16: {
-
-			int n16 = this.read16AfterOpcode();
-			this.push16(nextPC);
-			nextPC = n16;
+	}
 
-		}
-			break;
-		case CALL_CC_N16: {
+	private void dispatch(int encoding) {
 
-			if (this.extractCondition(opcode)) {
+		operand = BlockCache.NO_OPERAND;
+		execute((encoding == 0xCB) ? 0x100 | read8AfterOpcode() : encoding);
+	}
 
-				int n16 = this.read16AfterOpcode();
-				this.push16(nextPC);
-				nextPC = n16;
-				nextNonIdleCycle += opcode.additionalCycles;
+	// Poursuit le bloc en cours si PC désigne sa prochaine instruction, en
+	// traduit un nouveau sinon, et n'interprète l'instruction que si le code
+	// à cette adresse ne peut pas être traduit ; les instructions fusionnées
+	// avec leur suivante sont enchaînées sans repasser par step tant que la
+	// suivante débute avant la fin du budget
+	private void dispatchCached() {
+
+		BlockCache.Block b = block;
+		int i = blockIndex;
+		if (b == null || i == b.length || b.pcs[i] != PC) {
+			b = block = blocks.lookup(PC);
+			i = 0;
+			if (b == null) {
+				dispatch(read8(PC));
+				return;
 			}
-
 		}
-			break;
-		case RST_U3: {
+		while (true) {
+			blockIndex = i + 1;
+			operand = b.operands[i];
+			execute(b.indices[i]);
+			if (!b.fused[i] || nextNonIdleCycle >= stepLimit) {
+				return;
+			}
+			currentCycle = nextNonIdleCycle;
+			++i;
+		}
+	}
 
-			int n3 = this.extractBits(opcode);
-			push16(nextPC);
-			nextPC = AddressMap.RESETS[n3];
+	private void execute(int index) {
 
-		}
-			break;
-		case RET: {
+		Opcode opcode = OPCODE_TABLE[index];
+		int pc = PC;
+		long start = nextNonIdleCycle;
 
-			nextPC = pop16();
+		nextPC = Bits.clip(16, PC + opcode.totalBytes);
+		HANDLER_TABLE[index].execute(this);
 
+		PC = nextPC;
+		nextNonIdleCycle += opcode.cycles;
+		if (counters != null) {
+			counters.instructionExecuted(opcode.family);
 		}
-			break;
-		case RET_CC: {
+		// HALT ne dure aucun cycle, le processeur étant ensuite inactif
+		if (profiler != null) {
+			profiler.instructionExecuted(pc, opcode,
+					nextNonIdleCycle == Long.MAX_VALUE ? 0 : (int) (nextNonIdleCycle - start), PC, SP);
+		}
+	}
 
-			if (this.extractCondition(opcode)) {
+	/**
+	 * Construit le gestionnaire de l'opcode donné, dont les opérandes
+	 * (registres, condition, bit, direction, masques de fanions) sont extraits
+	 * une fois pour toutes de son encodage
+	 * 
+	 * @param o
+	 * @return le gestionnaire de l'opcode
+	 * @throws IllegalArgumentException
+	 *             si la famille de l'opcode est inconnue
+	 */
+	private static Handler handlerFor(Opcode o) {
+
+		final int enc = o.encoding;
+		final int extra = o.additionalCycles;
+
+		final Reg r3 = extractReg(enc, 3), r0 = extractReg(enc, 0);
+		final RegReader get3 = reader(r3), get0 = reader(r0);
+		final RegWriter set3 = writer(r3), set0 = writer(r0);
+		final Reg16 r16 = extractReg16(enc);
+		final boolean bit3 = Bits.test(enc, 3), bit4 = Bits.test(enc, 4), bit6 = Bits.test(enc, 6);
+		final int hlIncrement = bit4 ? -1 : 1;
+		final Alu.RotDir dir = bit3 ? Alu.RotDir.RIGHT : Alu.RotDir.LEFT;
+		final int n3 = Bits.extract(enc, 3, 3);
+
+		// Condition : le bit 4 choisit le fanion (Z ou C), le bit 3 sa valeur
+		final int ccMask = bit4 ? Alu.Flag.C.mask() : Alu.Flag.Z.mask();
+		final int ccValue = bit3 ? ccMask : 0;
+
+		switch (o.family) {
+
+		case NOP:
+			return cpu -> {
+			};
+		case LD_R8_HLR:
+			return cpu -> set3.write(cpu, cpu.read8AtHl());
+		case LD_A_HLRU:
+			return cpu -> {
+				cpu.A = cpu.read8AtHl();
+				cpu.setReg16(Reg16.HL, cpu.reg16(Reg16.HL) + hlIncrement);
+			};
+		case LD_A_N8R:
+			return cpu -> cpu.A = cpu.read8(Bits.clip(16, AddressMap.REGS_START + cpu.read8AfterOpcode()));
+		case LD_A_CR:
+			return cpu -> cpu.A = cpu.read8(AddressMap.REGS_START + cpu.C);
+		case LD_A_N16R:
+			return cpu -> cpu.A = cpu.read8(cpu.read16AfterOpcode());
+		case LD_A_BCR:
+			return cpu -> cpu.A = cpu.read8(cpu.reg16(Reg16.BC));
+		case LD_A_DER:
+			return cpu -> cpu.A = cpu.read8(cpu.reg16(Reg16.DE));
+		case LD_R8_N8:
+			return cpu -> set3.write(cpu, cpu.read8AfterOpcode());
+		case LD_R16SP_N16:
+			return cpu -> cpu.setReg16SP(r16, cpu.read16AfterOpcode());
+		case POP_R16:
+			return cpu -> cpu.setReg16(r16, cpu.pop16());
+		case LD_HLR_R8:
+			return cpu -> cpu.write8AtHl(get0.read(cpu));
+		case LD_HLRU_A:
+			return cpu -> {
+				cpu.write8AtHl(cpu.A);
+				cpu.setReg16(Reg16.HL, cpu.reg16(Reg16.HL) + hlIncrement);
+			};
+		case LD_N8R_A:
+			return cpu -> cpu.write8(AddressMap.REGS_START + cpu.read8AfterOpcode(), cpu.A);
+		case LD_CR_A:
+			return cpu -> cpu.write8(AddressMap.REGS_START + cpu.C, cpu.A);
+		case LD_N16R_A:
+			return cpu -> cpu.write8(cpu.read16AfterOpcode(), cpu.A);
+		case LD_BCR_A:
+			return cpu -> cpu.write8(cpu.reg16(Reg16.BC), cpu.A);
+		case LD_DER_A:
+			return cpu -> cpu.write8(cpu.reg16(Reg16.DE), cpu.A);
+		case LD_HLR_N8:
+			return cpu -> cpu.write8AtHl(cpu.read8AfterOpcode());
+		case LD_N16R_SP:
+			return cpu -> cpu.write16(cpu.read16AfterOpcode(), cpu.SP);
+		case LD_R8_R8:
+			return cpu -> set3.write(cpu, get0.read(cpu));
+		case LD_SP_HL:
+			return cpu -> cpu.SP = cpu.reg16(Reg16.HL);
+		case PUSH_R16:
+			return cpu -> cpu.push16(cpu.reg16(r16));
 
-				nextPC = pop16();
-				nextNonIdleCycle += opcode.additionalCycles;
-			}
+		// Add
+		case ADD_A_R8:
+			return cpu -> cpu.setAFromAlu(Alu.fastAdd(cpu.A, get0.read(cpu), cpu.carry(bit3)), ADD_FLAGS);
+		case ADD_A_N8:
+			return cpu -> cpu.setAFromAlu(Alu.fastAdd(cpu.A, cpu.read8AfterOpcode(), cpu.carry(bit3)), ADD_FLAGS);
+		case ADD_A_HLR:
+			return cpu -> cpu.setAFromAlu(Alu.fastAdd(cpu.A, cpu.read8AtHl(), cpu.carry(bit3)), ADD_FLAGS);
+		case INC_R8:
+			return cpu -> {
+				int vf = Alu.fastAdd(get3.read(cpu), 1, false);
+				set3.write(cpu, Alu.unpackValue(vf));
+				cpu.combineAluFlags(vf, INC_FLAGS);
+			};
+		case INC_HLR:
+			return cpu -> {
+				int vf = Alu.fastAdd(cpu.read8AtHl(), 1, false);
+				cpu.write8AtHl(Alu.unpackValue(vf));
+				cpu.combineAluFlags(vf, INC_FLAGS);
+			};
+		case INC_R16SP:
+			return cpu -> cpu.setReg16SP(r16, Alu.unpackValue(Alu.add16L(cpu.reg16SP(r16), 1)));
+		case ADD_HL_R16SP:
+			return cpu -> {
+				int vf = Alu.add16H(cpu.reg16SP(r16), cpu.reg16(Reg16.HL));
+				cpu.setReg16(Reg16.HL, Alu.unpackValue(vf));
+				cpu.combineAluFlags(vf, ADD_HL_FLAGS);
+			};
+		case LD_HLSP_S8:
+			return cpu -> {
+				int e = Bits.clip(16, Bits.signExtend8(cpu.read8AfterOpcode()));
+				int vf = Alu.add16L(cpu.SP, e);
+				cpu.combineAluFlags(vf, ADD_SP_FLAGS);
+
+				if (bit4) {
+					cpu.setReg16(Reg16.HL, Alu.unpackValue(vf));
+				} else {
+					cpu.SP = Alu.unpackValue(vf);
+				}
+			};
 
-		}
-			break;
+		// Subtract
+		case SUB_A_R8:
+			return cpu -> cpu.setAFromAlu(Alu.fastSub(cpu.A, get0.read(cpu), cpu.carry(bit3)), SUB_FLAGS);
+		case SUB_A_N8:
+			return cpu -> cpu.setAFromAlu(Alu.fastSub(cpu.A, cpu.read8AfterOpcode(), cpu.carry(bit3)), SUB_FLAGS);
+		case SUB_A_HLR:
+			return cpu -> cpu.setAFromAlu(Alu.fastSub(cpu.A, cpu.read8AtHl(), cpu.carry(bit3)), SUB_FLAGS);
+		case DEC_R8:
+			return cpu -> {
+				int vf = Alu.fastSub(get3.read(cpu), 1, false);
+				set3.write(cpu, Alu.unpackValue(vf));
+				cpu.combineAluFlags(vf, DEC_FLAGS);
+			};
+		case DEC_HLR:
+			return cpu -> {
+				int vf = Alu.fastSub(cpu.read8AtHl(), 1, false);
+				cpu.write8AtHl(Alu.unpackValue(vf));
+				cpu.combineAluFlags(vf, DEC_FLAGS);
+			};
+		case CP_A_R8:
+			return cpu -> cpu.combineAluFlags(Alu.fastSub(cpu.A, get0.read(cpu), false), SUB_FLAGS);
+		case CP_A_N8:
+			return cpu -> cpu.combineAluFlags(Alu.fastSub(cpu.A, cpu.read8AfterOpcode(), false), SUB_FLAGS);
+		case CP_A_HLR:
+			return cpu -> cpu.combineAluFlags(Alu.fastSub(cpu.A, cpu.read8AtHl(), false), SUB_FLAGS);
+		case DEC_R16SP:
+			return cpu -> cpu.setReg16SP(r16, Alu.unpackValue(Alu.add16L(cpu.reg16SP(r16), Bits.clip(16, -1))));
 
-		// Interrupts
-		case EDI: {
+		// And, or, xor, complement
+		case AND_A_N8:
+			return cpu -> cpu.setAFlags(Alu.fastAnd(cpu.A, cpu.read8AfterOpcode()));
+		case AND_A_R8:
+			return cpu -> cpu.setAFlags(Alu.fastAnd(cpu.A, get0.read(cpu)));
+		case AND_A_HLR:
+			return cpu -> cpu.setAFlags(Alu.fastAnd(cpu.A, cpu.read8AtHl()));
+		case OR_A_R8:
+			return cpu -> cpu.setAFlags(Alu.fastOr(cpu.A, get0.read(cpu)));
+		case OR_A_N8:
+			return cpu -> cpu.setAFlags(Alu.fastOr(cpu.A, cpu.read8AfterOpcode()));
+		case OR_A_HLR:
+			return cpu -> cpu.setAFlags(Alu.fastOr(cpu.A, cpu.read8AtHl()));
+		case XOR_A_R8:
+			return cpu -> cpu.setAFlags(Alu.fastXor(cpu.A, get0.read(cpu)));
+		case XOR_A_N8:
+			return cpu -> cpu.setAFlags(Alu.fastXor(cpu.A, cpu.read8AfterOpcode()));
+		case XOR_A_HLR:
+			return cpu -> cpu.setAFlags(Alu.fastXor(cpu.A, cpu.read8AtHl()));
+		case CPL:
+			return cpu -> cpu.setAFromAlu(Alu.fastXor(cpu.A, Bits.clip(8, -1)), CPL_FLAGS);
 
-			IME = Bits.test(opcode.encoding, 3);
+		// Rotate, shift
+		case ROTCA:
+			return cpu -> cpu.setAFromAlu(Alu.fastRotate(dir, cpu.A), ROTA_FLAGS);
+		case ROTA:
+			return cpu -> cpu.setAFromAlu(Alu.fastRotate(dir, cpu.A, cpu.carry(true)), ROTA_FLAGS);
+		case ROTC_R8:
+			return cpu -> cpu.setRegFlags(set0, Alu.fastRotate(dir, get0.read(cpu)));
+		case ROT_R8:
+			return cpu -> cpu.setRegFlags(set0, Alu.fastRotate(dir, get0.read(cpu), cpu.carry(true)));
+		case ROTC_HLR:
+			return cpu -> cpu.write8AtHlAndSetFlags(Alu.fastRotate(dir, cpu.read8AtHl()));
+		case ROT_HLR:
+			return cpu -> cpu.write8AtHlAndSetFlags(Alu.fastRotate(dir, cpu.read8AtHl(), cpu.carry(true)));
+		case SWAP_R8:
+			return cpu -> cpu.setRegFlags(set0, Alu.fastSwap(get0.read(cpu)));
+		case SWAP_HLR:
+			return cpu -> cpu.write8AtHlAndSetFlags(Alu.fastSwap(cpu.read8AtHl()));
+		case SLA_R8:
+			return cpu -> cpu.setRegFlags(set0, Alu.fastShiftLeft(get0.read(cpu)));
+		case SRA_R8:
+			return cpu -> cpu.setRegFlags(set0, Alu.fastShiftRightA(get0.read(cpu)));
+		case SRL_R8:
+			return cpu -> cpu.setRegFlags(set0, Alu.fastShiftRightL(get0.read(cpu)));
+		case SLA_HLR:
+			return cpu -> cpu.write8AtHlAndSetFlags(Alu.fastShiftLeft(cpu.read8AtHl()));
+		case SRA_HLR:
+			return cpu -> cpu.write8AtHlAndSetFlags(Alu.fastShiftRightA(cpu.read8AtHl()));
+		case SRL_HLR:
+			return cpu -> cpu.write8AtHlAndSetFlags(Alu.fastShiftRightL(cpu.read8AtHl()));
 
-		}
-			break;
-		case RETI: {
+		// Bit test and set
+		case BIT_U3_R8:
+			return cpu -> cpu.combineAluFlags(Alu.testBit(get0.read(cpu), n3), BIT_FLAGS);
+		case BIT_U3_HLR:
+			return cpu -> cpu.combineAluFlags(Alu.testBit(cpu.read8AtHl(), n3), BIT_FLAGS);
+		case CHG_U3_R8:
+			return cpu -> set0.write(cpu, Bits.set(get0.read(cpu), n3, bit6));
+		case CHG_U3_HLR:
+			return cpu -> cpu.write8AtHl(Bits.set(cpu.read8AtHl(), n3, bit6));
 
-			IME = true;
-			nextPC = pop16();
+		// Misc. ALU
+		case DAA:
+			return cpu -> cpu.setAFromAlu(Alu.fastBcdAdjust(cpu.A, Bits.test(cpu.F, Alu.Flag.N),
+					Bits.test(cpu.F, Alu.Flag.H), cpu.carry(true)), DAA_FLAGS);
+		case SCCF:
+			return cpu -> cpu.combineAluFlags(Bits.set(0, Alu.Flag.C.index(), !cpu.carry(bit3)), SCCF_FLAGS);
 
-		}
-			break;
+		// Jumps
+		case JP_HL:
+			return cpu -> cpu.nextPC = cpu.reg16(Reg16.HL);
+		case JP_N16:
+			return cpu -> cpu.nextPC = cpu.read16AfterOpcode();
+		case JP_CC_N16:
+			return cpu -> {
+				if ((cpu.F & ccMask) == ccValue) {
+					cpu.nextPC = cpu.read16AfterOpcode();
+					cpu.nextNonIdleCycle += extra;
+				}
+			};
+		case JR_E8:
+			return cpu -> cpu.nextPC = Bits.clip(16, cpu.nextPC + Bits.signExtend8(cpu.read8AfterOpcode()));
+		case JR_CC_E8:
+			return cpu -> {
+				if ((cpu.F & ccMask) == ccValue) {
+					cpu.nextPC = Bits.clip(16, cpu.nextPC + Bits.signExtend8(cpu.read8AfterOpcode()));
+					cpu.nextNonIdleCycle += extra;
+				}
+			};
 
-		// Misc control
-		case HALT: {
+		// Calls and returns
+		case CALL_N16:
+			return cpu -> {
+				int n16 = cpu.read16AfterOpcode();
+				cpu.push16(cpu.nextPC);
+				cpu.nextPC = n16;
+			};
+		case CALL_CC_N16:
+			return cpu -> {
+				if ((cpu.F & ccMask) == ccValue) {
+					int n16 = cpu.read16AfterOpcode();
+					cpu.push16(cpu.nextPC);
+					cpu.nextPC = n16;
+					cpu.nextNonIdleCycle += extra;
+				}
+			};
+		case RST_U3:
+			return cpu -> {
+				cpu.push16(cpu.nextPC);
+				cpu.nextPC = AddressMap.RESETS[n3];
+			};
+		case RET:
+			return cpu -> cpu.nextPC = cpu.pop16();
+		case RET_CC:
+			return cpu -> {
+				if ((cpu.F & ccMask) == ccValue) {
+					cpu.nextPC = cpu.pop16();
+					cpu.nextNonIdleCycle += extra;
+				}
+			};
 
-			nextNonIdleCycle = Long.MAX_VALUE;
+		// Interrupts
+		case EDI:
+			return cpu -> cpu.IME = bit3;
+		case RETI:
+			return cpu -> {
+				cpu.IME = true;
+				cpu.nextPC = cpu.pop16();
+			};
 
-		}
-			break;
+		// Misc control
+		case HALT:
+			return cpu -> cpu.nextNonIdleCycle = Long.MAX_VALUE;
 		case STOP:
-			throw new Error("STOP is not implemented");
+			return cpu -> {
+				throw new Error("STOP is not implemented");
+			};
 
-		default: {
+		default:
 			throw new IllegalArgumentException();
 		}
-		}
+	}
 
-		PC = nextPC;
-		nextNonIdleCycle += opcode.cycles;
+	private void forgetRamBlocks() {
+
+		block = null;
+		if (blocks != null) {
+			blocks.clearRam();
+		}
 	}
 
 	// Accès au bus
@@ -918,7 +801,7 @@ public final class Cpu implements Clocked, Component {
 	}
 
 	private int read8AfterOpcode() {
-		return read8(Bits.clip(16, PC + 1));
+		return operand == BlockCache.NO_OPERAND ? read8(Bits.clip(16, PC + 1)) : operand;
 	}
 
 	private int read16(int address) {
@@ -926,16 +809,22 @@ public final class Cpu implements Clocked, Component {
 	}
 
 	private int read16AfterOpcode() {
-		return read16(Bits.clip(16, PC + 1));
+		return operand == BlockCache.NO_OPERAND ? read16(Bits.clip(16, PC + 1)) : operand;
 	}
 
 	private void write8(int address, int v) {
 		bus.write(address, v);
+		if (address >= AddressMap.REGS_START && address < AddressMap.HIGH_RAM_START) {
+			ioWritten = true;
+		}
+		if (blocks != null && blocks.written(address)) {
+			block = null;
+		}
 	}
 
 	private void write16(int address, int v) {
-		bus.write(address, Bits.clip(8, v));
-		bus.write(address + 1, Bits.extract(v, 8, 8));
+		write8(address, Bits.clip(8, v));
+		write8(Bits.clip(16, address + 1), Bits.extract(v, 8, 8));
 	}
 
 	private void write8AtHl(int v) {
@@ -954,19 +843,81 @@ public final class Cpu implements Clocked, Component {
 		return v;
 	}
 
+	// Gestion des registres
+	// Les registres sont stockés dans des champs entiers contenant toujours des
+	// valeurs 8 bits, ce qui permet d'y accéder sans vérification
+
+	// Accesseurs du registre donné, liés une fois pour toutes aux gestionnaires
+	// afin que ceux-ci n'aient pas à choisir le registre à chaque exécution ;
+	// null si l'encodage désigne (HL) plutôt qu'un registre
+
+	private static RegReader reader(Reg r) {
+
+		if (r == null)
+			return null;
+
+		switch (r) {
+		case A:
+			return cpu -> cpu.A;
+		case F:
+			return cpu -> cpu.F;
+		case B:
+			return cpu -> cpu.B;
+		case C:
+			return cpu -> cpu.C;
+		case D:
+			return cpu -> cpu.D;
+		case E:
+			return cpu -> cpu.E;
+		case H:
+			return cpu -> cpu.H;
+		case L:
+			return cpu -> cpu.L;
+		}
+
+		throw new IllegalArgumentException();
+	}
+
+	private static RegWriter writer(Reg r) {
+
+		if (r == null)
+			return null;
+
+		switch (r) {
+		case A:
+			return (cpu, v) -> cpu.A = v;
+		case F:
+			return (cpu, v) -> cpu.F = v;
+		case B:
+			return (cpu, v) -> cpu.B = v;
+		case C:
+			return (cpu, v) -> cpu.C = v;
+		case D:
+			return (cpu, v) -> cpu.D = v;
+		case E:
+			return (cpu, v) -> cpu.E = v;
+		case H:
+			return (cpu, v) -> cpu.H = v;
+		case L:
+			return (cpu, v) -> cpu.L = v;
+		}
+
+		throw new IllegalArgumentException();
+	}
+
 	// Gestion des paires de registres
 
 	private int reg16(Reg16 r) {
 
 		switch (r) {
 		case AF:
-			return Bits.make16(registerFile.get(Reg.A), registerFile.get(Reg.F));
+			return (A << 8) | F;
 		case BC:
-			return Bits.make16(registerFile.get(Reg.B), registerFile.get(Reg.C));
+			return (B << 8) | C;
 		case DE:
-			return Bits.make16(registerFile.get(Reg.D), registerFile.get(Reg.E));
+			return (D << 8) | E;
 		case HL:
-			return Bits.make16(registerFile.get(Reg.H), registerFile.get(Reg.L));
+			return (H << 8) | L;
 		}
 
 		throw new IllegalArgumentException();
@@ -974,34 +925,41 @@ public final class Cpu implements Clocked, Component {
 
 	private void setReg16(Reg16 r, int newV) {
 
+		int high = (newV >>> 8) & 0xFF, low = newV & 0xFF;
+
 		switch (r) {
 		case AF: {
-			registerFile.set(Reg.A, Bits.extract(newV, 8, 8));
-			registerFile.set(Reg.F, Bits.clip(8, newV&0xfff0));
+			A = high;
+			F = low & 0xF0;
 
 		}
 			break;
 		case BC: {
-			registerFile.set(Reg.B, Bits.extract(newV, 8, 8));
-			registerFile.set(Reg.C, Bits.clip(8, newV));
+			B = high;
+			C = low;
 
 		}
 			break;
 		case DE: {
-			registerFile.set(Reg.D, Bits.extract(newV, 8, 8));
-			registerFile.set(Reg.E, Bits.clip(8, newV));
+			D = high;
+			E = low;
 
 		}
 			break;
 		case HL: {
-			registerFile.set(Reg.H, Bits.extract(newV, 8, 8));
-			registerFile.set(Reg.L, Bits.clip(8, newV));
+			H = high;
+			L = low;
 
 		}
 			break;
 		}
 	}
 
+	private int reg16SP(Reg16 r) {
+
+		return (r == Reg16.AF) ? SP : reg16(r);
+	}
+
 	private void setReg16SP(Reg16 r, int newV) {
 
 		if (r == Reg16.AF) {
@@ -1013,72 +971,44 @@ public final class Cpu implements Clocked, Component {
 
 	// Extraction de paramètres
 
-	private int extractBits(Opcode opcode) {
-
-		return Bits.extract(opcode.encoding, 3, 3);
-	}
-
-	private Alu.RotDir extractDir(Opcode opcode) {
+	private static Reg extractReg(int encoding, int startBit) {
 
-		if (Bits.test(opcode.encoding, 3)) {
-			return Alu.RotDir.RIGHT;
-		}
-		return Alu.RotDir.LEFT;
-	}
-
-	private Reg extractReg(Opcode opcode, int startBit) {
-
-		Reg r[] = { Reg.B, Reg.C, Reg.D, Reg.E, Reg.H, Reg.L, null, Reg.A };
-		return r[Bits.extract(opcode.encoding, startBit, 3)];
+		return REG_OPERANDS[Bits.extract(encoding, startBit, 3)];
 	}
 
-	private static final Reg16 r[] = { Reg16.BC, Reg16.DE, Reg16.HL, Reg16.AF };
-	private Reg16 extractReg16(Opcode opcode) {
+	private static Reg16 extractReg16(int encoding) {
 
-		return r[Bits.extract(opcode.encoding, 4, 2)];
+		return REG16_OPERANDS[Bits.extract(encoding, 4, 2)];
 	}
 
-	private int extractHlIncrement(Opcode opcode) {
+	// Gestion des fanions
 
-		return Bits.test(opcode.encoding, 4) ? -1 : 1;
+	private boolean carry(boolean used) {
 
+		return used && Bits.test(F, Alu.Flag.C);
 	}
 
-	private boolean extractCondition(Opcode opcode) {
-
-		int c = Bits.extract(opcode.encoding, 3, 2);
-
-		switch (c) {
-		case 0b00:
-			return !Bits.test(registerFile.get(Reg.F), Alu.Flag.Z);
-		case 0b01:
-			return Bits.test(registerFile.get(Reg.F), Alu.Flag.Z);
-		case 0b10:
-			return !Bits.test(registerFile.get(Reg.F), Alu.Flag.C);
-		case 0b11:
-			return Bits.test(registerFile.get(Reg.F), Alu.Flag.C);
-		}
+	private void setFlags(int valueFlags) {
 
-		return false;
+		F = Alu.unpackFlags(valueFlags);
 	}
 
-	// Gestion des fanions
-
-	private void setRegFromAlu(Reg r, int vf) {
+	private void setRegFlags(RegWriter r, int vf) {
 
-		int v = Alu.unpackValue(vf);
-		registerFile.set(r, v);
+		r.write(this, Alu.unpackValue(vf));
+		setFlags(vf);
 	}
 
-	private void setFlags(int valueFlags) {
+	private void setAFlags(int vf) {
 
-		registerFile.set(Reg.F, Alu.unpackFlags(valueFlags));
+		A = Alu.unpackValue(vf);
+		setFlags(vf);
 	}
 
-	private void setRegFlags(Reg r, int vf) {
+	private void setAFromAlu(int vf, int flagMasks) {
 
-		setRegFromAlu(r, vf);
-		setFlags(vf);
+		A = Alu.unpackValue(vf);
+		combineAluFlags(vf, flagMasks);
 	}
 
 	private void write8AtHlAndSetFlags(int vf) {
@@ -1087,16 +1017,40 @@ public final class Cpu implements Clocked, Component {
 		setFlags(vf);
 	}
 
-	private void combineAluFlags(int vf, FlagSrc z, FlagSrc n, FlagSrc h, FlagSrc c) {
+	/**
+	 * Combine les fanions de la valeur donnée avec ceux du registre F selon
+	 * les masques donnés, tels que retournés par flagMasks
+	 * 
+	 * @param vf
+	 * @param flagMasks
+	 */
+	private void combineAluFlags(int vf, int flagMasks) {
+
+		int alu = flagMasks & 0xFF;
+		int cpu = (flagMasks >>> 8) & 0xFF;
+		int v1 = flagMasks >>> 16;
+
+		setFlags((alu & vf) | (cpu & F) | v1);
+	}
 
-		int alu = createFlagMask(FlagSrc.ALU, z, n, h, c);
-		int cpu = createFlagMask(FlagSrc.CPU, z, n, h, c);
-		int v1 = createFlagMask(FlagSrc.V1, z, n, h, c);
+	/**
+	 * Retourne, empaquetés dans un entier, les masques des fanions provenant
+	 * respectivement de l'ALU (bits 0 à 7), du registre F (bits 8 à 15) et
+	 * valant 1 (bits 16 à 23)
+	 * 
+	 * @param z
+	 * @param n
+	 * @param h
+	 * @param c
+	 * @return les masques empaquetés
+	 */
+	private static int flagMasks(FlagSrc z, FlagSrc n, FlagSrc h, FlagSrc c) {
 
-		this.setFlags((alu & vf) | (cpu & registerFile.get(Reg.F)) | v1);
+		return createFlagMask(FlagSrc.ALU, z, n, h, c) | (createFlagMask(FlagSrc.CPU, z, n, h, c) << 8)
+				| (createFlagMask(FlagSrc.V1, z, n, h, c) << 16);
 	}
 
-	private int createFlagMask(FlagSrc f, FlagSrc z, FlagSrc n, FlagSrc h, FlagSrc c) {
+	private static int createFlagMask(FlagSrc f, FlagSrc z, FlagSrc n, FlagSrc h, FlagSrc c) {
 
 		return Alu.maskZNHC(z == f, n == f, h == f, c == f);
 	}
@@ -1,23 +1,26 @@
 package ch.epfl.gameboj.component.lcd;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.BooleanSupplier;
 
 import ch.epfl.gameboj.*;
 import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.PerformanceCounters;
 import ch.epfl.gameboj.Register;
 import ch.epfl.gameboj.RegisterFile;
 import ch.epfl.gameboj.bits.Bit;
-import ch.epfl.gameboj.bits.BitVector;
 
 import static ch.epfl.gameboj.bits.Bits.*;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 import ch.epfl.gameboj.component.memory.Ram;
 
-public final class LcdController implements Component, Clocked {
+public final class LcdController implements Component, Clocked, Stateful {
 
     private enum Reg implements Register {
         LCDC, STAT, SCY, SCX, LY, LYC, DMA, BGP, OBP0, OBP1, WY, WX
@@ -35,6 +38,8 @@ public final class LcdController implements Component, Clocked {
         UNUSED_0, UNUSED_1, UNUSED_2, UNUSED_3, PALETTE, FLIP_H, FLIP_V, BEHIND_BG
     }
 
+    private static final Reg[] REGS = Reg.values();
+
     private RegisterFile<Reg> registerFile;
 
     private static final int WX_OFFSET = 7;
@@ -44,14 +49,17 @@ public final class LcdController implements Component, Clocked {
     private static final int TOTAL_SPRITES = 40;
     private static final int MAX_SPRITES = 10;
 
-    private static final int LCD_WIDTH = 160;
-    private static final int LCD_HEIGHT = 144;
+    public static final int LCD_WIDTH = 160;
+    public static final int LCD_HEIGHT = 144;
+    public static final int FRAME_CYCLES = 17556;
     private static final int IMAGE_WIDTH = 256;
     private static final int IMAGE_HEIGHT = IMAGE_WIDTH;
     private static final int TILE_WIDTH = 8;
     private static final int TILE_HEIGHT = TILE_WIDTH;
+    private static final int TILE_BYTES = 2 * TILE_HEIGHT;
+    private static final int TILE_COUNT = (AddressMap.BG_DISPLAY_DATA[0]
+            - AddressMap.VIDEO_RAM_START) / TILE_BYTES;
 
-    private static final int TOTAL_CYCLES = 17556;
     private static final int IMAGE_CYCLES = 16416;
     private static final int LINE_CYCLES = 114;
     private static final int MODE2_CYCLES = 20;
@@ -60,12 +68,46 @@ public final class LcdController implements Component, Clocked {
 
     private Cpu cpu;
     private Ram videoRam, oam;
+
+    // Lignes des tuiles, décodées à la demande (octets inversés, celui de
+    // poids fort dans les bits 8 à 15) et invalidées lors d'une écriture dans
+    // les octets de la tuile
+    private final int[] decodedTiles = new int[TILE_COUNT * TILE_HEIGHT];
+    private final boolean[] tileDecoded = new boolean[TILE_COUNT];
     private Bus bus;
     private int winY, dmaIndex;
     private boolean dma;
 
-    LcdImage.Builder nextImageBuilder;
-    LcdImage currentImage;
+    // Lignes de travail, allouées une fois pour toutes, et images (en cours
+    // de dessin et affichée). Comme les pages de la mémoire vive, les lignes
+    // des images sont partagées, initialement avec une ligne vide commune
+    // puis avec les copies du contrôleur, jusqu'à la première écriture dans
+    // chacune d'elles ; l'image affichée n'est convertie en LcdImage qu'à la
+    // demande
+    private static final ScanlineBuffer BLANK_LINE = new ScanlineBuffer(LCD_WIDTH);
+    private final ScanlineBuffer bgTiles = new ScanlineBuffer(IMAGE_WIDTH);
+    private final ScanlineBuffer line = new ScanlineBuffer(LCD_WIDTH);
+    private final ScanlineBuffer window = new ScanlineBuffer(LCD_WIDTH);
+    private final ScanlineBuffer sprite = new ScanlineBuffer(LCD_WIDTH);
+    private final ScanlineBuffer backSprites = new ScanlineBuffer(LCD_WIDTH);
+    private final ScanlineBuffer frontSprites = new ScanlineBuffer(LCD_WIDTH);
+    private final int[] spritesOnLine = new int[MAX_SPRITES];
+
+    private ScanlineBuffer[] nextImage = newImage(), shownImage = newImage();
+    private boolean[] nextShared = newShared(), shownShared = newShared();
+    private LcdImage currentImage;
+
+    private int[] frameBuffer, frameColors;
+    private Runnable frameListener, vBlankListener;
+
+    // Consultée au début de chaque image ; une image sautée n'est pas
+    // dessinée, mais sa temporisation et ses interruptions restent exactes.
+    // Le fait que l'image en cours soit sautée fait partie de l'état, de
+    // sorte qu'une copie ou un état restauré au milieu d'une telle image ne
+    // publie pas une image en partie dessinée
+    private BooleanSupplier frameSkip;
+    private boolean skipping;
+    private PerformanceCounters counters;
 
     private long nextNonIdleCycle, lcdOnCycle;
 
@@ -83,7 +125,7 @@ public final class LcdController implements Component, Clocked {
         dmaIndex = 0;
         videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
         oam = new Ram(AddressMap.OAM_RAM_SIZE);
-        registerFile = new RegisterFile<>(Reg.values());
+        registerFile = new RegisterFile<>(REGS);
         dma = false;
     }
 
@@ -112,6 +154,21 @@ public final class LcdController implements Component, Clocked {
         reallyCycle(cycle);
     }
 
+    @Override
+    public long nextEventCycle(long cycle) {
+
+        if (dma) {
+            return cycle + 1;
+        }
+
+        if (nextNonIdleCycle == Integer.MAX_VALUE) {
+            return registerFile.testBit(Reg.LCDC, LCDC.LCD_STATUS) ? cycle + 1
+                    : Long.MAX_VALUE;
+        }
+
+        return Math.max(cycle + 1, nextNonIdleCycle);
+    }
+
     @Override
     public int read(int address) {
 
@@ -126,7 +183,7 @@ public final class LcdController implements Component, Clocked {
         }
 
         if (address >= AddressMap.REGS_LCDC_START && address < AddressMap.REGS_LCDC_END) {
-            return registerFile.get(Reg.values()[address - AddressMap.REGS_LCDC_START]);
+            return registerFile.get(REGS[address - AddressMap.REGS_LCDC_START]);
         }
 
         return NO_DATA;
@@ -139,7 +196,11 @@ public final class LcdController implements Component, Clocked {
         Preconditions.checkBits8(data);
 
         if (address >= AddressMap.VIDEO_RAM_START && address < AddressMap.VIDEO_RAM_END) {
-            videoRam.write(address - AddressMap.VIDEO_RAM_START, data);
+            int offset = address - AddressMap.VIDEO_RAM_START;
+            videoRam.write(offset, data);
+            if (offset < TILE_COUNT * TILE_BYTES) {
+                tileDecoded[offset / TILE_BYTES] = false;
+            }
         }
 
         if (address >= AddressMap.OAM_START && address < AddressMap.OAM_END) {
@@ -148,7 +209,7 @@ public final class LcdController implements Component, Clocked {
 
         if (address >= AddressMap.REGS_LCDC_START && address < AddressMap.REGS_LCDC_END) {
 
-            Reg r = Reg.values()[address - AddressMap.REGS_LCDC_START];
+            Reg r = REGS[address - AddressMap.REGS_LCDC_START];
 
             if (r == Reg.LY)
                 return;
@@ -158,6 +219,8 @@ public final class LcdController implements Component, Clocked {
                 registerFile.set(r, data);
                 dma = true;
                 dmaIndex = 0;
+                if (counters != null)
+                    counters.dmaStarted();
             }
 
             else if (r == Reg.LCDC && !test(data, LCDC.LCD_STATUS)) {
@@ -196,6 +259,127 @@ public final class LcdController implements Component, Clocked {
         bus.attach(this);
     }
 
+    @Override
+    public int[] addressRanges() {
+
+        return new int[] { AddressMap.VIDEO_RAM_START, AddressMap.VIDEO_RAM_END,
+                AddressMap.OAM_START, AddressMap.OAM_END,
+                AddressMap.REGS_LCDC_START, AddressMap.REGS_LCDC_END };
+    }
+
+    /**
+     * Rend l'état du contrôleur égal à celui du contrôleur donné ; les
+     * mémoires et les lignes des images sont partagées jusqu'à la première
+     * écriture, et le cache des tuiles est invalidé plutôt que copié. Comme
+     * le contrôleur donné est lui aussi modifié, aucun des deux ne doit être
+     * utilisé par un autre fil pendant l'appel. Le tableau de pixels et
+     * l'action de fin d'image ne font pas partie de l'état
+     * 
+     * @param that
+     */
+    public void copyStateFrom(LcdController that) {
+
+        videoRam.copyStateFrom(that.videoRam);
+        oam.copyStateFrom(that.oam);
+        registerFile.copyStateFrom(that.registerFile);
+        winY = that.winY;
+        dmaIndex = that.dmaIndex;
+        dma = that.dma;
+        nextNonIdleCycle = that.nextNonIdleCycle;
+        lcdOnCycle = that.lcdOnCycle;
+        skipping = that.skipping;
+        System.arraycopy(that.nextImage, 0, nextImage, 0, LCD_HEIGHT);
+        System.arraycopy(that.shownImage, 0, shownImage, 0, LCD_HEIGHT);
+        Arrays.fill(nextShared, true);
+        Arrays.fill(shownShared, true);
+        Arrays.fill(that.nextShared, true);
+        Arrays.fill(that.shownShared, true);
+        currentImage = that.currentImage;
+        Arrays.fill(tileDecoded, false);
+    }
+
+    /**
+     * L'état comprend les mémoires, les registres, l'avancement du DMA, le
+     * fait que l'image en cours soit sautée et les deux images, celle en
+     * cours de dessin et celle affichée ; le cache des
+     * tuiles n'en fait pas partie, puisqu'il se déduit de la mémoire vidéo
+     */
+    @Override
+    public int stateSize() {
+
+        return videoRam.stateSize() + oam.stateSize()
+                + registerFile.stateSize() + 2 * Integer.BYTES + 2
+                + 2 * Long.BYTES + 2 * LCD_HEIGHT * nextImage[0].stateSize();
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+
+        videoRam.saveState(buffer);
+        oam.saveState(buffer);
+        registerFile.saveState(buffer);
+        buffer.putInt(winY).putInt(dmaIndex).put((byte) (dma ? 1 : 0));
+        buffer.put((byte) (skipping ? 1 : 0));
+        buffer.putLong(nextNonIdleCycle).putLong(lcdOnCycle);
+        for (ScanlineBuffer l : nextImage) {
+            l.saveState(buffer);
+        }
+        for (ScanlineBuffer l : shownImage) {
+            l.saveState(buffer);
+        }
+    }
+
+    /**
+     * Écrit dans le tampon donné la partie de l'état qui ne dépend que de la
+     * simulation, c-à-d tout l'état sauf les images et le fait que l'image en
+     * cours soit sautée ; elle est identique que les images soient dessinées
+     * ou sautées
+     * 
+     * @param buffer
+     * @throws java.nio.BufferOverflowException
+     *             si le tampon n'a pas la place pour cette partie de l'état
+     */
+    public void saveEmulatedState(ByteBuffer buffer) {
+
+        videoRam.saveState(buffer);
+        oam.saveState(buffer);
+        registerFile.saveState(buffer);
+        buffer.putInt(winY).putInt(dmaIndex).put((byte) (dma ? 1 : 0));
+        buffer.putLong(nextNonIdleCycle).putLong(lcdOnCycle);
+    }
+
+    /**
+     * Les lignes de l'image en cours de dessin sont réécrites dans le tableau
+     * de pixels défini par setFrameBuffer, s'il existe
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+
+        videoRam.loadState(buffer);
+        oam.loadState(buffer);
+        registerFile.loadState(buffer);
+        winY = buffer.getInt();
+        dmaIndex = buffer.getInt();
+        dma = buffer.get() != 0;
+        skipping = buffer.get() != 0;
+        nextNonIdleCycle = buffer.getLong();
+        lcdOnCycle = buffer.getLong();
+        for (int y = 0; y < LCD_HEIGHT; y++) {
+            writableLine(nextImage, nextShared, y).loadState(buffer);
+        }
+        for (int y = 0; y < LCD_HEIGHT; y++) {
+            writableLine(shownImage, shownShared, y).loadState(buffer);
+        }
+
+        Arrays.fill(tileDecoded, false);
+        currentImage = null;
+        if (frameBuffer != null) {
+            for (int y = 0; y < LCD_HEIGHT; y++) {
+                nextImage[y].toArgb(frameBuffer, y * LCD_WIDTH, frameColors);
+            }
+        }
+    }
+
     /**
      * retourne l'image actuellement affichée à l'écran, de type LcdImage.
      * méthode retourne toujours une image non nulle de 160×144 pixels, même si
@@ -207,13 +391,125 @@ public final class LcdController implements Component, Clocked {
      */
     public LcdImage currentImage() {
 
-        return currentImage == null ? new LcdImage(LCD_WIDTH, LCD_HEIGHT)
-                : currentImage;
+        if (currentImage == null) {
+
+            LcdImage.Builder b = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+            for (int y = 0; y < LCD_HEIGHT; y++) {
+                b.setLine(y, shownImage[y].toLcdImageLine());
+            }
+            currentImage = b.build();
+        }
+
+        return currentImage;
+    }
+
+    /**
+     * Définit le tableau dans lequel chaque ligne est écrite dès qu'elle est
+     * dessinée, sous la forme de 160 pixels ARGB consécutifs, la couleur i
+     * d'un pixel étant remplacée par l'élément d'index i du tableau de
+     * couleurs donné ; un tableau de pixels nul désactive cette sortie
+     * 
+     * @param pixels
+     *            le tableau de 160×144 pixels, ou null
+     * @param colors
+     *            les valeurs ARGB des 4 couleurs
+     * @throws IllegalArgumentException
+     *             si l'un des tableaux n'a pas la bonne taille
+     */
+    public void setFrameBuffer(int[] pixels, int[] colors) {
+
+        if (pixels != null) {
+            Preconditions.checkArgument(pixels.length == LCD_WIDTH * LCD_HEIGHT
+                    && colors.length == 4);
+            frameColors = colors.clone();
+        }
+        frameBuffer = pixels;
+    }
+
+    /**
+     * Définit l'action exécutée chaque fois qu'une image dessinée est
+     * terminée, c-à-d au début de la période de retour vertical (VBLANK), ou
+     * aucune si elle est nulle ; elle peut p.ex. présenter le tableau de
+     * pixels défini par setFrameBuffer, ou en changer. Elle n'est pas exécutée
+     * pour les images sautées
+     * 
+     * @param listener
+     */
+    public void setFrameListener(Runnable listener) {
+
+        frameListener = listener;
+    }
+
+    /**
+     * Définit l'action exécutée au début de chaque période de retour vertical
+     * (VBLANK), que l'image qui vient de se terminer ait été dessinée ou
+     * sautée, ou aucune si elle est nulle ; elle permet p.ex. de compter les
+     * images simulées
+     * 
+     * @param listener
+     */
+    public void setVBlankListener(Runnable listener) {
+
+        vBlankListener = listener;
+    }
+
+    /**
+     * Définit la politique de saut d'images, consultée au début de chaque
+     * image : si elle retourne vrai, l'image n'est pas dessinée, et ni l'image
+     * affichée ni le tableau de pixels ne changent. Les registres, les modes
+     * et les interruptions évoluent exactement comme si elle l'était, de sorte
+     * que la simulation n'en est pas affectée. Aucune image n'est sautée si la
+     * politique est nulle
+     * 
+     * @param skip
+     *            la politique de saut d'images, ou null
+     */
+    public void setFrameSkip(BooleanSupplier skip) {
+
+        frameSkip = skip;
+    }
+
+    /**
+     * Définit les compteurs de performance auxquels chaque ligne dessinée,
+     * transfert DMA et image produite est signalé, ou aucun s'ils sont nuls
+     * 
+     * @param counters
+     */
+    public void setCounters(PerformanceCounters counters) {
+
+        this.counters = counters;
+    }
+
+    private static ScanlineBuffer[] newImage() {
+
+        ScanlineBuffer[] image = new ScanlineBuffer[LCD_HEIGHT];
+        Arrays.fill(image, BLANK_LINE);
+        return image;
+    }
+
+    private static boolean[] newShared() {
+
+        boolean[] shared = new boolean[LCD_HEIGHT];
+        Arrays.fill(shared, true);
+        return shared;
+    }
+
+    // Retourne la ligne donnée de l'image, en remplaçant par une nouvelle
+    // ligne celle qui est partagée ; son contenu n'est pas copié, puisque
+    // l'appelant la réécrit entièrement
+    private static ScanlineBuffer writableLine(ScanlineBuffer[] image,
+            boolean[] shared, int y) {
+
+        if (shared[y]) {
+            image[y] = new ScanlineBuffer(LCD_WIDTH);
+            shared[y] = false;
+        }
+        return image[y];
     }
 
     private void reallyCycle(long cycle) {
 
-        long elapsed = (cycle - lcdOnCycle) % TOTAL_CYCLES;
+        long elapsed = (cycle - lcdOnCycle) % FRAME_CYCLES;
 
         if (elapsed < IMAGE_CYCLES) {
 
@@ -223,8 +519,16 @@ public final class LcdController implements Component, Clocked {
 
                     winY = 0;
                     registerFile.set(Reg.LY, 0);
-                    nextImageBuilder = new LcdImage.Builder(LCD_WIDTH,
-                            LCD_HEIGHT);
+                    skipping = frameSkip != null && frameSkip.getAsBoolean();
+                    // Même sautée, l'image en cours ne garde rien des
+                    // précédentes ; une ligne partagée est simplement
+                    // remplacée par la ligne vide commune
+                    for (int y = 0; y < LCD_HEIGHT; y++) {
+                        if (nextShared[y])
+                            nextImage[y] = BLANK_LINE;
+                        else
+                            nextImage[y].clear();
+                    }
                 } else {
 
                     registerFile.set(Reg.LY, registerFile.get(Reg.LY) + 1);
@@ -242,7 +546,21 @@ public final class LcdController implements Component, Clocked {
 
                 setMode(3);
                 int index = registerFile.get(Reg.LY);
-                nextImageBuilder.setLine(index, computeLine(index));
+                if (skipping) {
+                    // La ligne de la fenêtre avance comme si elle était
+                    // dessinée, puisqu'elle fait partie de l'état
+                    if (windowVisible(index))
+                        winY++;
+                } else {
+                    computeLine(index);
+                    writableLine(nextImage, nextShared, index).set(line);
+                    if (counters != null)
+                        counters.scanlineRendered();
+                    if (frameBuffer != null) {
+                        line.toArgb(frameBuffer, index * LCD_WIDTH,
+                                frameColors);
+                    }
+                }
                 nextNonIdleCycle += MODE3_CYCLES;
 
             } else if (elapsed % LINE_CYCLES == MODE2_CYCLES + MODE3_CYCLES) {
@@ -259,7 +577,15 @@ public final class LcdController implements Component, Clocked {
             if ((elapsed - IMAGE_CYCLES) == 0) {
 
                 setMode(1);
-                currentImage = nextImageBuilder.build();
+                if (!skipping) {
+                    ScanlineBuffer[] shown = shownImage;
+                    shownImage = nextImage;
+                    nextImage = shown;
+                    boolean[] shownWasShared = shownShared;
+                    shownShared = nextShared;
+                    nextShared = shownWasShared;
+                    currentImage = null;
+                }
                 cpu.requestInterrupt(Interrupt.VBLANK);
                 if (registerFile.testBit(Reg.STAT, STAT.INT_MODE1)) {
                     cpu.requestInterrupt(Interrupt.LCD_STAT);
@@ -269,6 +595,14 @@ public final class LcdController implements Component, Clocked {
                 registerFile.set(Reg.LY, registerFile.get(Reg.LY) + 1);
                 LYchanged();
 
+                if (counters != null)
+                    counters.frameCompleted();
+                if (vBlankListener != null)
+                    vBlankListener.run();
+                if (frameListener != null && !skipping) {
+                    frameListener.run();
+                }
+
             } else if ((elapsed - IMAGE_CYCLES) % LINE_CYCLES == 0) {
 
                 nextNonIdleCycle += LINE_CYCLES;
@@ -278,75 +612,69 @@ public final class LcdController implements Component, Clocked {
         }
     }
 
-    private LcdImageLine computeLine(int line) {
+    // Calcule la ligne d'index donné dans line
+    private void computeLine(int lineIndex) {
 
-        LcdImageLine backGround;
+        computeBg(lineIndex);
 
-        if (line < registerFile.get(Reg.WY)
-                || !registerFile.testBit(Reg.LCDC, LCDC.WIN)
-                || !(registerFile.get(Reg.WX) - WX_OFFSET < LCD_WIDTH)) {
+        if (windowVisible(lineIndex)) {
 
-            backGround = computeBg(line);
-
-        } else {
-
-            backGround = computeBg(line).join(computeWin(),
-                    Math.max(0, registerFile.get(Reg.WX) - WX_OFFSET));
+            computeWin();
+            line.join(window, Math.max(0, registerFile.get(Reg.WX) - WX_OFFSET));
         }
 
         if (!registerFile.testBit(Reg.LCDC, LCDC.OBJ)) {
-            return backGround;
+            return;
         }
 
-        LcdImageLine backSprites = lineWithSprites(line, true);
-        LcdImageLine frontSprites = lineWithSprites(line, false);
+        lineWithSprites(lineIndex, true, backSprites);
+        lineWithSprites(lineIndex, false, frontSprites);
 
-        BitVector opacity = backGround.opacity()
-                .or(backSprites.opacity().not());
-        return backSprites.below(backGround, opacity).below(frontSprites);
+        line.over(backSprites);
+        line.below(frontSprites);
+    }
 
+    private boolean windowVisible(int lineIndex) {
+
+        return lineIndex >= registerFile.get(Reg.WY)
+                && registerFile.testBit(Reg.LCDC, LCDC.WIN)
+                && registerFile.get(Reg.WX) - WX_OFFSET < LCD_WIDTH;
     }
 
-    private LcdImageLine computeBg(int lineIndex) {
+    private void computeBg(int lineIndex) {
 
         if (!registerFile.testBit(Reg.LCDC, LCDC.BG)) {
 
-            return new LcdImageLine(LCD_WIDTH);
+            line.clear();
+            return;
         }
 
-        LcdImageLine.Builder bgBuilder = new LcdImageLine.Builder(IMAGE_WIDTH);
-
         for (int i = 0; i * TILE_WIDTH < IMAGE_WIDTH; i++) {
 
-            int lsbAddress = lsbAddress(lineIndex, i * TILE_WIDTH, true);
-            int lsb = read(lsbAddress);
-            int msb = read(lsbAddress + 1);
-            bgBuilder.setBytes(i, reverse8(lsb), reverse8(msb));
+            int bytes = tileLine(lineIndex, i * TILE_WIDTH, true);
+            bgTiles.setBytes(i, clip(8, bytes), bytes >>> 8);
         }
+        bgTiles.computeOpacity();
 
-        return bgBuilder.build()
-                .extractWrapped(registerFile.get(Reg.SCX), LCD_WIDTH)
-                .mapColors(registerFile.get(Reg.BGP));
+        line.extractWrapped(bgTiles, registerFile.get(Reg.SCX));
+        line.mapColors(registerFile.get(Reg.BGP));
     }
 
-    private LcdImageLine computeWin() {
-
-        LcdImageLine.Builder winBuilder = new LcdImageLine.Builder(LCD_WIDTH);
+    private void computeWin() {
 
         for (int i = 0; i * TILE_WIDTH < LCD_WIDTH; i++) {
 
-            int lsbAddress = lsbAddress(winY, i * TILE_WIDTH, false);
-            int lsb = read(lsbAddress);
-            int msb = read(lsbAddress + 1);
-            winBuilder.setBytes(i, reverse8(lsb), reverse8(msb));
+            int bytes = tileLine(winY, i * TILE_WIDTH, false);
+            window.setBytes(i, clip(8, bytes), bytes >>> 8);
         }
+        window.computeOpacity();
 
         winY++;
-        return winBuilder.build().shift(registerFile.get(Reg.WX) - WX_OFFSET)
-                .mapColors(registerFile.get(Reg.BGP));
+        window.shift(registerFile.get(Reg.WX) - WX_OFFSET);
+        window.mapColors(registerFile.get(Reg.BGP));
     }
 
-    private int lsbAddress(int row, int col, boolean background) {
+    private int tileLine(int row, int col, boolean background) {
 
         int r = background ? (row + registerFile.get(Reg.SCY)) % IMAGE_HEIGHT
                 : winY;
@@ -356,7 +684,7 @@ public final class LcdController implements Component, Clocked {
                 + AddressMap.BG_DISPLAY_DATA[registerFile.testBit(Reg.LCDC,
                         background ? LCDC.BG_AREA : LCDC.WIN_AREA) ? 1 : 0];
 
-        int tileIndex = read(indexAddress);
+        int tileIndex = videoRam.read(indexAddress - AddressMap.VIDEO_RAM_START);
 
         boolean source = registerFile.testBit(Reg.LCDC, LCDC.TILE_SOURCE);
         int tileAddress = AddressMap.TILE_SOURCE[source ? 1 : 0] + tileIndex * 0x10
@@ -365,7 +693,25 @@ public final class LcdController implements Component, Clocked {
                                 ? -AddressMap.TILE_SOURCE[1] / 0x10
                                 : AddressMap.TILE_SOURCE[1] / 0x10);
 
-        return tileAddress + 2 * (r % TILE_WIDTH);
+        return decodedTileLine(
+                (tileAddress - AddressMap.VIDEO_RAM_START) / TILE_BYTES,
+                r % TILE_HEIGHT);
+    }
+
+    private int decodedTileLine(int tile, int y) {
+
+        if (!tileDecoded[tile]) {
+
+            int address = tile * TILE_BYTES;
+            for (int i = 0; i < TILE_HEIGHT; i++, address += 2) {
+                decodedTiles[tile * TILE_HEIGHT + i] = make16(
+                        reverse8(videoRam.read(address + 1)),
+                        reverse8(videoRam.read(address)));
+            }
+            tileDecoded[tile] = true;
+        }
+
+        return decodedTiles[tile * TILE_HEIGHT + y];
     }
 
     private void LYchanged() {
@@ -384,9 +730,10 @@ public final class LcdController implements Component, Clocked {
         registerFile.setBit(Reg.STAT, STAT.MODE1, test(m, 1));
     }
 
-    private int[] spritesIntersectingLine(int line) {
+    // Range dans spritesOnLine les index des sprites intersectant la ligne,
+    // triés par abscisse, et retourne leur nombre
+    private int spritesIntersectingLine(int line) {
 
-        int coordinateIndex[] = new int[10];
         int cnt = 0;
 
         for (int i = 0; i < TOTAL_SPRITES && cnt < MAX_SPRITES; i++) {
@@ -397,23 +744,21 @@ public final class LcdController implements Component, Clocked {
                             ? SPRITE_MAX_HEIGHT
                             : SPRITE_MIN_HEIGHT)) {
 
-                coordinateIndex[cnt++] = make16(oam.read(4 * i + 1), i);
+                spritesOnLine[cnt++] = make16(oam.read(4 * i + 1), i);
             }
         }
 
-        Arrays.sort(coordinateIndex, 0, cnt);
-        int sprites[] = new int[cnt];
+        Arrays.sort(spritesOnLine, 0, cnt);
 
         for (int i = 0; i < cnt; i++) {
-            sprites[i] = clip(8, coordinateIndex[i]);
+            spritesOnLine[i] = clip(8, spritesOnLine[i]);
         }
 
-        return sprites;
+        return cnt;
     }
 
-    private LcdImageLine lineWithSprite(int spriteIndex, int line) {
-
-        LcdImageLine.Builder b = new LcdImageLine.Builder(LCD_WIDTH);
+    // Calcule dans sprite la ligne du sprite d'index donné
+    private void lineWithSprite(int spriteIndex, int line) {
 
         int spriteLine;
 
@@ -445,27 +790,31 @@ public final class LcdController implements Component, Clocked {
             msb = reverse8(msb);
         }
 
-        b.setBytes(0, lsb, msb);
-
-        return b.build().shift(oam.read(4 * spriteIndex + 1) - SPRITE_WIDTH)
-                .mapColors(registerFile
-                        .get(test(oam.read(4 * spriteIndex + 3), Sprite.PALETTE)
-                                ? Reg.OBP1
-                                : Reg.OBP0));
+        sprite.clear();
+        sprite.setBytes(0, lsb, msb);
+        sprite.computeOpacity();
 
+        sprite.shift(oam.read(4 * spriteIndex + 1) - SPRITE_WIDTH);
+        sprite.mapColors(registerFile
+                .get(test(oam.read(4 * spriteIndex + 3), Sprite.PALETTE)
+                        ? Reg.OBP1
+                        : Reg.OBP0));
     }
 
-    private LcdImageLine lineWithSprites(int line, boolean behind) {
+    // Calcule dans la ligne donnée les sprites, d'arrière- ou d'avant-plan,
+    // intersectant la ligne d'index donné
+    private void lineWithSprites(int line, boolean behind, ScanlineBuffer l) {
 
-        int sprites[] = spritesIntersectingLine(line);
-        LcdImageLine l = new LcdImageLine(LCD_WIDTH);
-        for (int sprite : sprites) {
+        int cnt = spritesIntersectingLine(line);
+        l.clear();
+        for (int i = 0; i < cnt; i++) {
 
-            if (test(oam.read(sprite * 4 + 3), Sprite.BEHIND_BG) == behind) {
+            if (test(oam.read(spritesOnLine[i] * 4 + 3), Sprite.BEHIND_BG) == behind) {
 
-                l = lineWithSprite(sprite, line).below(l);
+                lineWithSprite(spritesOnLine[i], line);
+                sprite.below(l);
+                l.set(sprite);
             }
         }
-        return l;
     }
-}
\ No newline at end of file
+}
@@ -4,7 +4,6 @@ import java.util.Objects;
 
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.BitVector;
-import ch.epfl.gameboj.bits.Bits;
 
 public final class LcdImageLine {
 
@@ -100,7 +99,8 @@ public final class LcdImageLine {
 
     /**
      * Transformer les couleurs de la ligne en fonction d'une palette, donnée
-     * sous la forme d'un octet
+     * sous la forme d'un octet ; la transformation se fait par mots de 32
+     * pixels, au moyen de la table des palettes
      * 
      * @param color
      * @return ligne
@@ -112,19 +112,8 @@ public final class LcdImageLine {
         if (color == IDENTITY_MAP)
             return this;
 
-        BitVector new_lsb = new BitVector(size());
-        BitVector new_msb = new BitVector(size());
-
-        for (int i = 0; i < 4; i++) {
-
-            new_lsb = new_lsb.or(new BitVector(size(), Bits.test(color, 2 * i))
-                    .and(lsb.xor(new BitVector(size(), !Bits.test(i, 0))))
-                    .and(msb.xor(new BitVector(size(), !Bits.test(i, 1)))));
-
-            new_msb = new_msb.or(new BitVector(size(), Bits.test(color, 2 * i + 1))
-                    .and(lsb.xor(new BitVector(size(), !Bits.test(i, 0))))
-                    .and(msb.xor(new BitVector(size(), !Bits.test(i, 1)))));
-        }
+        BitVector new_lsb = lsb.combine(msb, (l, m) -> PaletteTable.mapLsb(color, l, m));
+        BitVector new_msb = lsb.combine(msb, (l, m) -> PaletteTable.mapMsb(color, l, m));
 
         return new LcdImageLine(new_lsb, new_msb, opacity);
     }
@@ -0,0 +1,69 @@
+package ch.epfl.gameboj.component.lcd;
+
+/**
+ * Table des 256 palettes possibles, permettant de transformer les couleurs de
+ * 32 pixels à la fois, donnés par un mot de chacun de leurs plans de bits
+ * (poids faible et fort)
+ *
+ * Pour chaque palette, la table contient, pour chacun des deux plans de
+ * sortie, un masque par couleur d'entrée, valant -1 si le bit correspondant de
+ * la couleur associée par la palette vaut 1, et 0 sinon
+ */
+final class PaletteTable {
+
+    private static final int COLORS = 4;
+    private static final int MASKS = 2 * COLORS;
+    private static final int[] TABLE = buildTable();
+
+    private PaletteTable() {}
+
+    /**
+     * Retourne le plan de poids faible des couleurs associées par la palette
+     * donnée aux pixels dont les plans de bits sont donnés
+     *
+     * @param palette
+     * @param lsb
+     * @param msb
+     * @return le nouveau plan de poids faible
+     */
+    static int mapLsb(int palette, int lsb, int msb) {
+        return map(palette * MASKS, lsb, msb);
+    }
+
+    /**
+     * Retourne le plan de poids fort des couleurs associées par la palette
+     * donnée aux pixels dont les plans de bits sont donnés
+     *
+     * @param palette
+     * @param lsb
+     * @param msb
+     * @return le nouveau plan de poids fort
+     */
+    static int mapMsb(int palette, int lsb, int msb) {
+        return map(palette * MASKS + COLORS, lsb, msb);
+    }
+
+    // Choisit, pour chaque pixel, le masque de sa couleur : d'abord selon le
+    // bit de poids faible, parmi les couleurs 0 et 1 puis 2 et 3, ensuite
+    // selon celui de poids fort
+    private static int map(int i, int lsb, int msb) {
+
+        int low = TABLE[i] ^ (lsb & (TABLE[i] ^ TABLE[i + 1]));
+        int high = TABLE[i + 2] ^ (lsb & (TABLE[i + 2] ^ TABLE[i + 3]));
+        return low ^ (msb & (low ^ high));
+    }
+
+    private static int[] buildTable() {
+
+        int[] table = new int[256 * MASKS];
+        for (int palette = 0; palette < 256; palette++) {
+            for (int color = 0; color < COLORS; color++) {
+
+                int mapped = (palette >>> (2 * color)) & 0b11;
+                table[palette * MASKS + color] = -(mapped & 1);
+                table[palette * MASKS + COLORS + color] = -(mapped >>> 1);
+            }
+        }
+        return table;
+    }
+}
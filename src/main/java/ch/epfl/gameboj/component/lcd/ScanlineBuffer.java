@@ -0,0 +1,319 @@
+package ch.epfl.gameboj.component.lcd;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.BitVector;
+import ch.epfl.gameboj.component.Stateful;
+
+/**
+ * Ligne d'image modifiable, dont les trois plans de bits (poids faible, poids
+ * fort et opacité) sont alloués une fois pour toutes ; chaque opération
+ * modifie la ligne sur place et produit les mêmes pixels que l'opération
+ * correspondante de LcdImageLine, sans rien allouer
+ */
+final class ScanlineBuffer implements Stateful {
+
+    private static final int IDENTITY_MAP = 0b11_10_01_00;
+
+    private final int[] lsb, msb, opacity;
+
+    /**
+     * Construit une ligne de la taille donnée, dont tous les pixels sont
+     * transparents et de couleur 0
+     *
+     * @param size
+     * @throws IllegalArgumentException
+     *             si la taille n'est pas un multiple strictement positif de 32
+     */
+    ScanlineBuffer(int size) {
+
+        Preconditions.checkArgument(size > 0 && size % Integer.SIZE == 0);
+        lsb = new int[size / Integer.SIZE];
+        msb = new int[lsb.length];
+        opacity = new int[lsb.length];
+    }
+
+    /**
+     * @return la longueur, en pixels, de la ligne
+     */
+    int size() {
+        return lsb.length * Integer.SIZE;
+    }
+
+    /**
+     * Rend tous les pixels de la ligne transparents et de couleur 0
+     */
+    void clear() {
+
+        Arrays.fill(lsb, 0);
+        Arrays.fill(msb, 0);
+        Arrays.fill(opacity, 0);
+    }
+
+    /**
+     * Copie la ligne donnée, de même taille, dans celle-ci
+     *
+     * @param that
+     */
+    void set(ScanlineBuffer that) {
+
+        System.arraycopy(that.lsb, 0, lsb, 0, lsb.length);
+        System.arraycopy(that.msb, 0, msb, 0, msb.length);
+        System.arraycopy(that.opacity, 0, opacity, 0, opacity.length);
+    }
+
+    /**
+     * Définit les octets de poids faible et fort de la ligne à l'index donné,
+     * sans modifier l'opacité
+     *
+     * @param index
+     * @param lsbByte
+     * @param msbByte
+     */
+    void setBytes(int index, int lsbByte, int msbByte) {
+
+        int word = index / Integer.BYTES;
+        int shift = Byte.SIZE * (index % Integer.BYTES);
+        int mask = ~(0xFF << shift);
+
+        lsb[word] = (lsb[word] & mask) | (lsbByte << shift);
+        msb[word] = (msb[word] & mask) | (msbByte << shift);
+    }
+
+    /**
+     * Rend opaques les pixels de couleur non nulle et transparents les autres,
+     * comme le fait LcdImageLine.Builder.build
+     */
+    void computeOpacity() {
+
+        for (int i = 0; i < lsb.length; i++) {
+            opacity[i] = lsb[i] | msb[i];
+        }
+    }
+
+    /**
+     * Remplace la ligne par celle extraite, à partir du pixel donné, de
+     * l'extension par enroulement de la ligne source donnée, équivalent de
+     * LcdImageLine.extractWrapped
+     *
+     * @param src
+     * @param index
+     */
+    void extractWrapped(ScanlineBuffer src, int index) {
+
+        int n = src.lsb.length;
+        int start = Math.floorMod(index, src.size());
+        int word = start / Integer.SIZE, bit = start % Integer.SIZE;
+
+        for (int i = 0; i < lsb.length; i++) {
+
+            int k = (word + i) % n, l = (k + 1) % n;
+            lsb[i] = wrappedBits(src.lsb, k, l, bit);
+            msb[i] = wrappedBits(src.msb, k, l, bit);
+            opacity[i] = wrappedBits(src.opacity, k, l, bit);
+        }
+    }
+
+    /**
+     * Décale la ligne de la distance donnée, positive vers la gauche,
+     * équivalent de LcdImageLine.shift
+     *
+     * @param dist
+     */
+    void shift(int dist) {
+
+        // Chaque mot ne dépend que de mots d'index inférieurs (resp.
+        // supérieurs) pour un décalage à gauche (resp. à droite), d'où le
+        // sens de parcours
+        if (dist >= 0) {
+            for (int i = lsb.length - 1; i >= 0; i--) {
+                shiftWord(i, dist);
+            }
+        } else {
+            for (int i = 0; i < lsb.length; i++) {
+                shiftWord(i, dist);
+            }
+        }
+    }
+
+    /**
+     * Transforme les couleurs de la ligne selon la palette donnée, équivalent
+     * de LcdImageLine.mapColors
+     *
+     * @param palette
+     */
+    void mapColors(int palette) {
+
+        if (palette == IDENTITY_MAP) {
+            return;
+        }
+
+        for (int i = 0; i < lsb.length; i++) {
+
+            int l = lsb[i], m = msb[i];
+            lsb[i] = PaletteTable.mapLsb(palette, l, m);
+            msb[i] = PaletteTable.mapMsb(palette, l, m);
+        }
+    }
+
+    /**
+     * Remplace les pixels de la ligne à partir de l'index donné par ceux de
+     * la ligne donnée, équivalent de LcdImageLine.join
+     *
+     * @param other
+     * @param index
+     */
+    void join(ScanlineBuffer other, int index) {
+
+        for (int i = 0; i < lsb.length; i++) {
+
+            int ones = onesFrom(i, index);
+            lsb[i] = (lsb[i] & ~ones) | (other.lsb[i] & ones);
+            msb[i] = (msb[i] & ~ones) | (other.msb[i] & ones);
+            opacity[i] = (opacity[i] & ~ones) | (other.opacity[i] & ones);
+        }
+    }
+
+    /**
+     * Place la ligne donnée au-dessus de celle-ci, en utilisant son opacité,
+     * équivalent de LcdImageLine.below(upper)
+     *
+     * @param upper
+     */
+    void below(ScanlineBuffer upper) {
+
+        for (int i = 0; i < lsb.length; i++) {
+            compose(i, upper.lsb[i], upper.msb[i], upper.opacity[i]);
+        }
+    }
+
+    /**
+     * Place la ligne au-dessus de la ligne donnée, dont les pixels ne restent
+     * visibles que là où ils sont opaques et ceux de cette ligne transparents ;
+     * équivalent de behind.below(this, this.opacity().or(behind.opacity().not()))
+     *
+     * @param behind
+     */
+    void over(ScanlineBuffer behind) {
+
+        for (int i = 0; i < lsb.length; i++) {
+
+            int op = opacity[i] | ~behind.opacity[i];
+            int l = lsb[i], m = msb[i];
+
+            lsb[i] = behind.lsb[i];
+            msb[i] = behind.msb[i];
+            opacity[i] = behind.opacity[i];
+            compose(i, l, m, op);
+        }
+    }
+
+    /**
+     * Écrit les pixels de la ligne dans le tableau donné, à partir de l'index
+     * donné, chaque couleur étant remplacée par sa valeur dans le tableau des
+     * couleurs donné
+     *
+     * @param pixels
+     * @param offset
+     * @param colors
+     */
+    void toArgb(int[] pixels, int offset, int[] colors) {
+
+        for (int i = 0; i < lsb.length; i++) {
+
+            int l = lsb[i], m = msb[i];
+            for (int b = 0; b < Integer.SIZE; b++) {
+                pixels[offset++] = colors[((l >>> b) & 1) | (((m >>> b) & 1) << 1)];
+            }
+        }
+    }
+
+    /**
+     * @return une ligne immuable contenant les mêmes pixels que celle-ci
+     */
+    LcdImageLine toLcdImageLine() {
+
+        return new LcdImageLine(toBitVector(lsb), toBitVector(msb),
+                toBitVector(opacity));
+    }
+
+    @Override
+    public int stateSize() {
+        return 3 * lsb.length * Integer.BYTES;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+
+        for (int i = 0; i < lsb.length; i++) {
+            buffer.putInt(lsb[i]).putInt(msb[i]).putInt(opacity[i]);
+        }
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+
+        for (int i = 0; i < lsb.length; i++) {
+            lsb[i] = buffer.getInt();
+            msb[i] = buffer.getInt();
+            opacity[i] = buffer.getInt();
+        }
+    }
+
+    private void compose(int i, int upperLsb, int upperMsb, int op) {
+
+        lsb[i] = (lsb[i] & ~op) | (upperLsb & op);
+        msb[i] = (msb[i] & ~op) | (upperMsb & op);
+        opacity[i] |= op;
+    }
+
+    private void shiftWord(int i, int dist) {
+
+        int index = i * Integer.SIZE - dist;
+        lsb[i] = zeroExtendedBits(lsb, index);
+        msb[i] = zeroExtendedBits(msb, index);
+        opacity[i] = zeroExtendedBits(opacity, index);
+    }
+
+    // Les 32 bits de l'extension par 0 des mots donnés, à partir de l'index
+    // donné
+    private static int zeroExtendedBits(int[] words, int index) {
+
+        int word = Math.floorDiv(index, Integer.SIZE);
+        int bit = Math.floorMod(index, Integer.SIZE);
+
+        int low = word >= 0 && word < words.length ? words[word] >>> bit : 0;
+        int high = bit != 0 && word + 1 >= 0 && word + 1 < words.length
+                ? words[word + 1] << (Integer.SIZE - bit)
+                : 0;
+        return low | high;
+    }
+
+    private static int wrappedBits(int[] words, int k, int l, int bit) {
+
+        return bit == 0 ? words[k]
+                : (words[k] >>> bit) | (words[l] << (Integer.SIZE - bit));
+    }
+
+    // Les bits du mot d'index donné dont l'index dans la ligne est supérieur
+    // ou égal à celui donné
+    private static int onesFrom(int word, int index) {
+
+        int start = index - word * Integer.SIZE;
+        if (start <= 0) {
+            return -1;
+        }
+        return start >= Integer.SIZE ? 0 : -1 << start;
+    }
+
+    private static BitVector toBitVector(int[] words) {
+
+        BitVector.Builder b = new BitVector.Builder(words.length * Integer.SIZE);
+        for (int i = 0; i < words.length * Integer.BYTES; i++) {
+            b.setByte(i, (words[i / Integer.BYTES] >>> (Byte.SIZE * (i % Integer.BYTES))) & 0xFF);
+        }
+        return b.build();
+    }
+}
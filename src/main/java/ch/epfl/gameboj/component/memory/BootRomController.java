@@ -1,13 +1,16 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 
-public final class BootRomController implements Component {
+public final class BootRomController implements Component, Stateful {
 
     private final Cartridge cartridge;
     private final Rom rom;
@@ -56,4 +59,59 @@ public final class BootRomController implements Component {
         }
     }
 
+    /**
+     * retourne vrai ssi la mémoire de démarrage a été désactivée, de sorte
+     * que la cartouche est visible à toutes ses adresses
+     * 
+     * @return vrai ssi la mémoire de démarrage est désactivée
+     */
+    public boolean bootRomDisabled() {
+        return bootRomDisabled;
+    }
+
+    @Override
+    public int[] addressRanges() {
+
+        int[] cartridgeRanges = cartridge.addressRanges();
+        int[] ranges = Arrays.copyOf(cartridgeRanges, cartridgeRanges.length + 4);
+        ranges[cartridgeRanges.length] = AddressMap.BOOT_ROM_START;
+        ranges[cartridgeRanges.length + 1] = AddressMap.BOOT_ROM_END;
+        ranges[cartridgeRanges.length + 2] = AddressMap.REG_BOOT_ROM_DISABLE;
+        ranges[cartridgeRanges.length + 3] = AddressMap.REG_BOOT_ROM_DISABLE + 1;
+        return ranges;
+    }
+
+    /**
+     * rend l'état du contrôleur égal à celui du contrôleur donné, à
+     * l'exception de celui de la cartouche qui lui est attachée
+     * 
+     * @param that
+     */
+    public void copyStateFrom(BootRomController that) {
+
+        bootRomDisabled = that.bootRomDisabled;
+    }
+
+    /**
+     * l'état du contrôleur comprend celui de la cartouche qui lui est attachée
+     */
+    @Override
+    public int stateSize() {
+        return 1 + cartridge.stateSize();
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+
+        buffer.put((byte) (bootRomDisabled ? 1 : 0));
+        cartridge.saveState(buffer);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+
+        bootRomDisabled = buffer.get() != 0;
+        cartridge.loadState(buffer);
+    }
+
 }
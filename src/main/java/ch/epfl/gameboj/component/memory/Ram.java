@@ -1,46 +1,67 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Stateful;
+
+/**
+ * Mémoire vive, découpée en pages de 256 octets qui peuvent être partagées
+ * avec d'autres mémoires : une page partagée n'est copiée que lors de la
+ * première écriture dans celle-ci (copie sur écriture). Initialement, toutes
+ * les pages partagent une même page nulle
+ */
+public final class Ram implements Stateful {
 
-public final class Ram {
+	private static final int PAGE_BITS = 8;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private static final byte[] ZERO_PAGE = new byte[PAGE_SIZE];
 
-	private final byte[] data;
+	private final int size;
+	private final byte[][] pages;
+	private final boolean[] shared;
 
 	/**
 	 * construit une nouvelle mémoire vive de taille donnée (en octets) ou lève
 	 * IllegalArgumentException si celle-ci est strictement négative
-	 * 
+	 *
 	 * @param size
 	 * @throws IllegalArgumentException
 	 */
 	public Ram(int size) {
 
 		Preconditions.checkArgument(size >= 0);
-		data = new byte[size];
+		this.size = size;
+		pages = new byte[(size + PAGE_MASK) >>> PAGE_BITS][];
+		shared = new boolean[pages.length];
+		Arrays.fill(pages, ZERO_PAGE);
+		Arrays.fill(shared, true);
 	}
 
 	/**
 	 * retourne la taille, en octets, de la mémoire
-	 * 
+	 *
 	 * @return
 	 */
 	public int size() {
-		return data.length;
+		return size;
 	}
 
 	/**
 	 * retourne l'octet se trouvant à l'index donné, sous la forme d'une valeur
 	 * comprise entre 0 et FF16, ou lève l'exception IndexOutOfBoundsException si
 	 * l'index est invalide
-	 * 
+	 *
 	 * @param index
 	 * @return
 	 * @throws IndexOutOfBoundsException
 	 */
 	public int read(int index) {
 
-		if (index >= 0 && index < data.length) {
-			return Byte.toUnsignedInt(data[index]);
+		if (index >= 0 && index < size) {
+			return Byte.toUnsignedInt(pages[index >>> PAGE_BITS][index & PAGE_MASK]);
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -48,10 +69,10 @@ public final class Ram {
 
 	/**
 	 * Modifie le contenu de la mémoire à l'index donné pour qu'il soit égal à la
-	 * valeur donnée ; lève l'exception IndexOutOfBoundsException si l'index est
+	 * valeur donnée ; lève l'exception IndexOutOfBoundsException si l'index est
 	 * invalide, et l'exception IllegalArgumentException si la valeur n'est pas une
 	 * valeur 8 bits
-	 * 
+	 *
 	 * @param index
 	 * @param value
 	 * @throws IndexOutOfBoundsException
@@ -60,10 +81,70 @@ public final class Ram {
 	public void write(int index, int value) {
 
 		Preconditions.checkBits8(value);
-		if (index < 0 || index >= data.length) {
+		if (index < 0 || index >= size) {
 			throw new IndexOutOfBoundsException();
 		}
 
-		data[index] = (byte) value;
+		writablePage(index >>> PAGE_BITS)[index & PAGE_MASK] = (byte) value;
+	}
+
+	/**
+	 * Rend le contenu de la mémoire égal à celui de la mémoire donnée, de même
+	 * taille, en partageant toutes ses pages avec elle ; chacune des deux
+	 * mémoires copiera ensuite une page avant d'y écrire pour la première fois.
+	 * Comme la mémoire donnée est elle aussi modifiée, aucune des deux ne doit
+	 * être utilisée par un autre fil pendant l'appel
+	 *
+	 * @param that
+	 * @throws IllegalArgumentException
+	 *             si les mémoires n'ont pas la même taille
+	 */
+	public void copyStateFrom(Ram that) {
+
+		Preconditions.checkArgument(that.size == size);
+		System.arraycopy(that.pages, 0, pages, 0, pages.length);
+		Arrays.fill(shared, true);
+		Arrays.fill(that.shared, true);
+	}
+
+	@Override
+	public int stateSize() {
+		return size;
+	}
+
+	@Override
+	public void saveState(ByteBuffer buffer) {
+
+		for (int p = 0; p < pages.length; p++) {
+			buffer.put(pages[p], 0, pageLength(p));
+		}
+	}
+
+	@Override
+	public void loadState(ByteBuffer buffer) {
+
+		for (int p = 0; p < pages.length; p++) {
+
+			if (shared[p]) {
+				pages[p] = new byte[PAGE_SIZE];
+				shared[p] = false;
+			}
+			buffer.get(pages[p], 0, pageLength(p));
+		}
+	}
+
+	private byte[] writablePage(int p) {
+
+		if (shared[p]) {
+			pages[p] = pages[p].clone();
+			shared[p] = false;
+		}
+		return pages[p];
+	}
+
+	// La dernière page n'est utilisée qu'en partie si la taille n'est pas un
+	// multiple de celle des pages
+	private int pageLength(int p) {
+		return Math.min(PAGE_SIZE, size - (p << PAGE_BITS));
 	}
 }
@@ -72,4 +72,10 @@ public final class RamController implements Component {
             ram.write(address - startAddress, data);
         }
     }
+
+    @Override
+    public int[] addressRanges() {
+        
+        return new int[] { startAddress, endAddress };
+    }
 }
@@ -1,10 +1,23 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
+/**
+ * Mémoire morte ; immuable, elle peut être partagée entre plusieurs cartouches
+ * et plusieurs fils sans synchronisation
+ * 
+ * Son contenu est soit une copie, sur le tas, d'un tableau d'octets, soit une
+ * projection en mémoire d'un fichier, lue directement dans le cache de pages
+ * du système
+ */
 public final class Rom {
     
-    private final byte[] data;
+    private final ByteBuffer data;
     
     /**
      * construit une mémoire morte dont 
@@ -20,7 +33,35 @@ public final class Rom {
         if(data == null) {
             throw new NullPointerException();
         }else {
-            this.data=Arrays.copyOf(data, data.length);
+            this.data=ByteBuffer.wrap(Arrays.copyOf(data, data.length));
+        }
+    }
+
+    private Rom(ByteBuffer data) {
+        this.data = data;
+    }
+
+    /**
+     * retourne une mémoire morte dont le contenu est celui du fichier donné,
+     * projeté en mémoire plutôt que copié ; le fichier ne doit pas être
+     * modifié tant que la mémoire est utilisée
+     * 
+     * @param file
+     * @return
+     * @throws IOException
+     *             en cas d'erreur d'entrée-sortie, y compris si le fichier
+     *             n'existe pas
+     * @throws IllegalArgumentException
+     *             si le fichier fait plus de 2 Gio
+     */
+    public static Rom mapFile(File file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+
+            // La projection reste valide après la fermeture du canal
+            return new Rom(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
         }
     }
     
@@ -32,7 +73,7 @@ public final class Rom {
      * @return
      */
     public int size() {
-        return data.length;
+        return data.capacity();
     }
     
     /**
@@ -46,8 +87,8 @@ public final class Rom {
      */
     public int read(int index) {
         
-        if(index >= 0 && index < data.length) {
-            return Byte.toUnsignedInt(data[index]);
+        if(index >= 0 && index < data.capacity()) {
+            return Byte.toUnsignedInt(data.get(index));
         }else {
             throw new IndexOutOfBoundsException();
         }
@@ -0,0 +1,273 @@
+package ch.epfl.gameboj.gui;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Movie;
+import ch.epfl.gameboj.RewindBuffer;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Boucle d'émulation, destinée à tourner dans son propre fil : elle fait
+ * avancer le Game Boy au rythme de l'horloge murale, publie chaque image
+ * dessinée dans un triple tampon, et exécute entre deux tranches de
+ * simulation les commandes (touches, vitesse, captures) que d'autres fils lui
+ * transmettent au moyen d'une file sans verrou. Elle enregistre aussi
+ * régulièrement l'état du Game Boy, pour pouvoir revenir en arrière
+ *
+ * Seul le fil d'émulation accède au Game Boy une fois celui-ci démarré
+ */
+final class Emulator implements Runnable {
+
+    // Nombre maximal de cycles simulés sans consulter la file de commandes,
+    // soit environ une image
+    private static final long MAX_SLICE_CYCLES = LcdController.FRAME_CYCLES;
+    private static final long IDLE_NANOS = 1_000_000;
+
+    // Un état est enregistré toutes les 5 images, et un retour en arrière
+    // rétablit un état par image affichée, soit 5 fois la vitesse normale
+    private static final int REWIND_FRAMES = 5;
+    private static final long REWIND_BUDGET = 32 << 20;
+    private static final long REWIND_PERIOD_NANOS = 1_000_000_000L / 60;
+
+    /**
+     * Vitesse illimitée : le Game Boy est simulé aussi vite que possible, et
+     * seule la dernière image terminée est affichée
+     */
+    static final float MAX_SPEED = Float.POSITIVE_INFINITY;
+
+    private final GameBoy gameBoy;
+    private final TripleBuffer frames;
+    private final int[] colors;
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final RewindBuffer rewindBuffer;
+
+    private volatile boolean running = true;
+    // Écrit uniquement par le fil d'émulation
+    private volatile long emulatedFrames;
+
+    // Uniquement accédés par le fil d'émulation
+    private long origin;
+    private long originCycle;
+    private float speed = 1f;
+    private boolean rewinding;
+    private long lastRewind;
+    private Movie.Recorder recorder;
+
+    /**
+     * Construit une boucle d'émulation pour le Game Boy donné, dont les images
+     * sont converties au moyen des couleurs données
+     *
+     * @param gameBoy
+     * @param colors
+     * @throws NullPointerException
+     *             si le Game Boy ou les couleurs sont nuls
+     */
+    Emulator(GameBoy gameBoy, int[] colors) {
+
+        this.gameBoy = Objects.requireNonNull(gameBoy);
+        this.colors = colors.clone();
+        frames = new TripleBuffer(
+                LcdController.LCD_WIDTH * LcdController.LCD_HEIGHT, colors[0]);
+
+        rewindBuffer = new RewindBuffer(gameBoy, REWIND_FRAMES, REWIND_BUDGET);
+
+        LcdController lcd = gameBoy.lcdController();
+        lcd.setFrameBuffer(frames.back(), this.colors);
+        lcd.setFrameListener(() -> {
+            frames.publish();
+            lcd.setFrameBuffer(frames.back(), this.colors);
+        });
+        // À vitesse illimitée, une image n'est dessinée que si l'affichage a
+        // pris la précédente, les autres ne pouvant pas être vues
+        lcd.setFrameSkip(
+                () -> speed == MAX_SPEED && !rewinding && frames.pending());
+        lcd.setVBlankListener(() -> emulatedFrames++);
+    }
+
+    /**
+     * Transmet au fil d'émulation une commande, qui y sera exécutée entre deux
+     * tranches de simulation ; peut être appelée depuis n'importe quel fil
+     *
+     * @param command
+     * @throws NullPointerException
+     *             si la commande est nulle
+     */
+    void submit(Runnable command) {
+        commands.add(Objects.requireNonNull(command));
+    }
+
+    /**
+     * Presse la touche donnée, en l'enregistrant si un film est en cours
+     * d'enregistrement ; peut être appelée depuis n'importe quel fil
+     *
+     * @param key
+     */
+    void keyPressed(Joypad.Key key) {
+        submit(() -> {
+            if (recorder != null)
+                recorder.keyPressed(key);
+            else
+                gameBoy.joypad().keyPressed(key);
+        });
+    }
+
+    /**
+     * Relâche la touche donnée, en l'enregistrant si un film est en cours
+     * d'enregistrement ; peut être appelée depuis n'importe quel fil
+     *
+     * @param key
+     */
+    void keyReleased(Joypad.Key key) {
+        submit(() -> {
+            if (recorder != null)
+                recorder.keyReleased(key);
+            else
+                gameBoy.joypad().keyReleased(key);
+        });
+    }
+
+    /**
+     * Commence l'enregistrement d'un film à partir de l'état actuel, en
+     * abandonnant celui éventuellement en cours ; peut être appelée depuis
+     * n'importe quel fil
+     */
+    void startRecording() {
+        submit(() -> recorder = new Movie.Recorder(gameBoy));
+    }
+
+    /**
+     * Termine l'enregistrement du film en cours, s'il existe, et le transmet
+     * au consommateur donné, dans le fil d'émulation ; peut être appelée
+     * depuis n'importe quel fil
+     *
+     * @param consumer
+     */
+    void stopRecording(Consumer<Movie> consumer) {
+        submit(() -> {
+            if (recorder != null) {
+                consumer.accept(recorder.build());
+                recorder = null;
+            }
+        });
+    }
+
+    /**
+     * Change la vitesse de simulation, 0 figeant le Game Boy et MAX_SPEED le
+     * simulant aussi vite que possible ; peut être appelée depuis n'importe
+     * quel fil
+     *
+     * @param newSpeed
+     */
+    void setSpeed(float newSpeed) {
+        submit(() -> {
+            resetOrigin();
+            speed = newSpeed;
+        });
+    }
+
+    /**
+     * Démarre ou arrête le retour en arrière, durant lequel les états
+     * enregistrés sont rétablis, du plus récent au plus ancien ; peut être
+     * appelée depuis n'importe quel fil
+     *
+     * @param rewind
+     */
+    void setRewinding(boolean rewind) {
+        submit(() -> rewinding = rewind);
+    }
+
+    /**
+     * Demande l'arrêt de la boucle d'émulation
+     */
+    void stop() {
+        running = false;
+    }
+
+    /**
+     * Retourne le nombre d'images terminées depuis le démarrage, dessinées ou
+     * sautées, dont seules certaines ont pu être affichées ; peut être
+     * appelée depuis n'importe quel fil
+     *
+     * @return le nombre d'images simulées
+     */
+    long emulatedFrames() {
+        return emulatedFrames;
+    }
+
+    /**
+     * Prend la dernière image publiée, s'il y en a une nouvelle ; réservé au
+     * fil d'affichage
+     *
+     * @return vrai ssi frame() retourne désormais une nouvelle image
+     */
+    boolean update() {
+        return frames.update();
+    }
+
+    /**
+     * @return les pixels, au format ARGB, de la dernière image prise par
+     *         update ; réservé au fil d'affichage
+     */
+    int[] frame() {
+        return frames.front();
+    }
+
+    @Override
+    public void run() {
+
+        resetOrigin();
+        while (running) {
+
+            Runnable command;
+            while ((command = commands.poll()) != null)
+                command.run();
+
+            if (rewinding) {
+                rewindStep();
+                continue;
+            }
+
+            // À vitesse illimitée, la cible est toujours une tranche plus loin
+            long target = speed == MAX_SPEED ? Long.MAX_VALUE
+                    : originCycle + (long) ((System.nanoTime() - origin)
+                            * GameBoy.CYCLES_PER_NANOSECOND * speed);
+
+            if (target > gameBoy.cycles()) {
+                gameBoy.runUntil(
+                        Math.min(target, gameBoy.cycles() + MAX_SLICE_CYCLES));
+                rewindBuffer.record();
+            } else {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    // Rétablit un état par image affichée, puis simule une image pour que
+    // celle de l'état rétabli soit publiée
+    private void rewindStep() {
+
+        long now = System.nanoTime();
+        if (now - lastRewind >= REWIND_PERIOD_NANOS && rewindBuffer.rewind()) {
+            lastRewind = now;
+            // Un film ne peut pas remonter avant son début
+            if (recorder != null && !recorder.truncate())
+                recorder = new Movie.Recorder(gameBoy);
+            gameBoy.runUntil(gameBoy.cycles() + LcdController.FRAME_CYCLES);
+        } else {
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+        resetOrigin();
+    }
+
+    private void resetOrigin() {
+
+        origin = System.nanoTime();
+        originCycle = gameBoy.cycles();
+    }
+}
@@ -8,16 +8,23 @@ import java.util.Map;
 import javax.imageio.ImageIO;
 
 import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Movie;
+import ch.epfl.gameboj.PerformanceCounters;
 import ch.epfl.gameboj.component.Joypad;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
 import ch.epfl.gameboj.component.lcd.LcdImage;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
@@ -25,6 +32,7 @@ import javafx.stage.Stage;
 public final class Main extends Application {
 
     private static final float SCALE = 3f;
+    private static final long FPS_PERIOD_NANOS = 500_000_000;
 
     private final Map<String, Joypad.Key> textMap = Map.of("a", Joypad.Key.A,
             "b", Joypad.Key.B, "s", Joypad.Key.START, " ", Joypad.Key.SELECT);
@@ -33,10 +41,6 @@ public final class Main extends Application {
             Joypad.Key.LEFT, KeyCode.RIGHT, Joypad.Key.RIGHT, KeyCode.UP,
             Joypad.Key.UP, KeyCode.DOWN, Joypad.Key.DOWN);
 
-    private long origin = System.nanoTime();
-    private long lastChangeCycle = 0;
-    private float speed = 1f;
-
     public static void main(String[] args) {
         //args = new String[] { "Super Mario Land (JUE) (V1.1) [!].gb" }; // ENLEVER
         Application.launch(args);
@@ -54,44 +58,91 @@ public final class Main extends Application {
         Cartridge cartridge = Cartridge.ofFile(romFile);
         GameBoy gameBoy = new GameBoy(cartridge);
 
-        LcdImage image = gameBoy.lcdController().currentImage();
-        ImageView imageView = new ImageView(ImageConverter.convert(image));
-        imageView.setFitWidth(SCALE * image.width());
-        imageView.setFitHeight(SCALE * image.height());
+        // La traduction du code, qui ne change pas le résultat de la
+        // simulation, est désactivée si la propriété gameboj.translate est
+        // fausse
+        gameBoy.setTranslation(
+                !"false".equals(System.getProperty("gameboj.translate")));
+
+        // Les compteurs de performance, désactivés par défaut, sont exportés
+        // par JMX si la propriété gameboj.counters est vraie
+        if (Boolean.getBoolean("gameboj.counters")) {
+            PerformanceCounters counters = new PerformanceCounters();
+            gameBoy.setCounters(counters);
+            counters.register(cartridge.name());
+        }
 
+        // Le Game Boy est simulé dans son propre fil, auquel les touches et
+        // les menus transmettent des commandes ; le fil JavaFX ne fait
+        // qu'afficher la dernière image publiée
+        Emulator emulator = new Emulator(gameBoy, ImageConverter.COLOR_MAP);
+        Thread emulation = new Thread(emulator, "Gameboj emulation");
+        emulation.setDaemon(true);
+
+        WritableImage image = new WritableImage(LcdController.LCD_WIDTH,
+                LcdController.LCD_HEIGHT);
+        ImageView imageView = new ImageView(image);
+        imageView.setFitWidth(SCALE * image.getWidth());
+        imageView.setFitHeight(SCALE * image.getHeight());
+
+        // La touche d'effacement arrière fait revenir en arrière tant qu'elle
+        // est pressée
         imageView.setOnKeyPressed((e) -> {
 
+            if (e.getCode() == KeyCode.BACK_SPACE) {
+                emulator.setRewinding(true);
+                return;
+            }
+
             Joypad.Key key = e.getText().length() == 0
                     ? codeMap.getOrDefault(e.getCode(), null)
                     : textMap.getOrDefault(e.getText(), null);
 
             if (key != null)
-                gameBoy.joypad().keyPressed(key);
+                emulator.keyPressed(key);
         });
 
         imageView.setOnKeyReleased((e) -> {
 
+            if (e.getCode() == KeyCode.BACK_SPACE) {
+                emulator.setRewinding(false);
+                return;
+            }
+
             Joypad.Key key = e.getText().length() == 0
                     ? codeMap.getOrDefault(e.getCode(), null)
                     : textMap.getOrDefault(e.getText(), null);
 
             if (key != null)
-                gameBoy.joypad().keyReleased(key);
+                emulator.keyReleased(key);
         });
 
+        // Le nombre d'images simulées par seconde, qui peut dépasser largement
+        // celui des images affichées, est mis à jour deux fois par seconde
+        Label fpsLabel = new Label();
+
         AnimationTimer timer = new AnimationTimer() {
 
+            private long lastTime, lastFrames;
+
             @Override
             public void handle(long time) {
 
-                long elapsed = time - origin;
-                long cycle = (long) (elapsed * GameBoy.CYCLES_PER_NANOSECOND
-                        * speed);
-
-                gameBoy.runUntil(lastChangeCycle + cycle);
-                LcdImage currentImage = gameBoy.lcdController().currentImage();
-                imageView.setImage(ImageConverter.convert(currentImage));
-
+                if (time - lastTime >= FPS_PERIOD_NANOS) {
+                    long frames = emulator.emulatedFrames();
+                    if (lastTime != 0)
+                        fpsLabel.setText(String.format("%.0f FPS",
+                                (frames - lastFrames) * 1e9
+                                        / (time - lastTime)));
+                    lastTime = time;
+                    lastFrames = frames;
+                }
+
+                if (emulator.update())
+                    image.getPixelWriter().setPixels(0, 0,
+                            LcdController.LCD_WIDTH, LcdController.LCD_HEIGHT,
+                            PixelFormat.getIntArgbInstance(), emulator.frame(),
+                            0, LcdController.LCD_WIDTH);
             }
         };
 
@@ -101,65 +152,77 @@ public final class Main extends Application {
 
         Menu file = new Menu("File");
         MenuItem screenshot = new MenuItem("Screenshot");
-        screenshot.setOnAction(
-                e -> takeScreenshot(gameBoy.lcdController().currentImage()));
+        screenshot.setOnAction(e -> emulator.submit(() -> {
+            LcdImage li = gameBoy.lcdController().currentImage();
+            Platform.runLater(() -> takeScreenshot(li));
+        }));
         file.getItems().add(screenshot);
 
+        // Les films sont enregistrés dans movie.gbm, et peuvent être rejoués
+        // sans interface graphique par ReplayRunner
+        Menu movie = new Menu("Movie");
+        MenuItem record = new MenuItem("Start recording");
+        record.setOnAction(e -> emulator.startRecording());
+        MenuItem stop = new MenuItem("Stop recording");
+        stop.setOnAction(e -> emulator.stopRecording(
+                m -> Platform.runLater(() -> saveMovie(m))));
+        movie.getItems().addAll(record, stop);
+
         Menu gpu = new Menu("GPU");
         MenuItem tiles = new MenuItem("Show tiles");
         tiles.setOnAction(e -> {
 
-            showImage(Viewer.tiles(gameBoy));
+            emulator.submit(() -> {
+                LcdImage li = Viewer.tiles(gameBoy);
+                Platform.runLater(() -> showImage(li));
+            });
 
         });
         MenuItem win = new MenuItem("Show window");
         win.setOnAction(e -> {
 
-            showImage(Viewer.window(gameBoy));
+            emulator.submit(() -> {
+                LcdImage li = Viewer.window(gameBoy);
+                Platform.runLater(() -> showImage(li));
+            });
 
         });
         MenuItem bg = new MenuItem("Show background");
         bg.setOnAction(e -> {
 
-            showImage(Viewer.background(gameBoy));
+            emulator.submit(() -> {
+                LcdImage li = Viewer.background(gameBoy);
+                Platform.runLater(() -> showImage(li));
+            });
 
         });
         MenuItem sprites = new MenuItem("Show sprites");
         sprites.setOnAction(e -> {
 
-            showImage(Viewer.sprites(gameBoy));
+            emulator.submit(() -> {
+                LcdImage li = Viewer.sprites(gameBoy);
+                Platform.runLater(() -> showImage(li));
+            });
 
         });
         gpu.getItems().addAll(tiles, win, bg, sprites);
 
         Menu speedMenu = new Menu("Speed");
         MenuItem freeze = new MenuItem("Freeze");
-        freeze.setOnAction(e -> timer.stop());
+        freeze.setOnAction(e -> emulator.setSpeed(0f));
         MenuItem x1 = new MenuItem("x1");
-        x1.setOnAction(e -> {
-            lastChangeCycle = gameBoy.cycles();
-            origin = System.nanoTime();
-            speed = 1f;
-            timer.start();
-        });
+        x1.setOnAction(e -> emulator.setSpeed(1f));
         MenuItem x2 = new MenuItem("x2");
-        x2.setOnAction(e -> {
-            lastChangeCycle = gameBoy.cycles();
-            origin = System.nanoTime();
-            speed = 2f;
-            timer.start();
-        });
+        x2.setOnAction(e -> emulator.setSpeed(2f));
         MenuItem x3 = new MenuItem("x3");
-        x3.setOnAction(e -> {
-            lastChangeCycle = gameBoy.cycles();
-            origin = System.nanoTime();
-            speed = 3f;
-            timer.start();
-        });
-        speedMenu.getItems().addAll(freeze, x1, x2, x3);
+        x3.setOnAction(e -> emulator.setSpeed(3f));
+        MenuItem max = new MenuItem("Max");
+        max.setOnAction(e -> emulator.setSpeed(Emulator.MAX_SPEED));
+        speedMenu.getItems().addAll(freeze, x1, x2, x3, max);
 
-        bar.getMenus().addAll(file, gpu, speedMenu);
+        bar.getMenus().addAll(file, movie, gpu, speedMenu);
         pane.setTop(bar);
+        pane.setBottom(fpsLabel);
 
         Scene scene = new Scene(pane);
 
@@ -167,6 +230,8 @@ public final class Main extends Application {
         primaryStage.setScene(scene);
         primaryStage.show();
         imageView.requestFocus();
+        primaryStage.setOnHidden(e -> emulator.stop());
+        emulation.start();
         timer.start();
 
     }
@@ -189,6 +254,15 @@ public final class Main extends Application {
         }
     }
 
+    private void saveMovie(Movie m) {
+
+        try {
+            m.writeFile(new File("movie.gbm"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     private void showImage(LcdImage image) {
 
         Stage stage = new Stage();
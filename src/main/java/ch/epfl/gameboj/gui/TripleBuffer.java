@@ -0,0 +1,91 @@
+package ch.epfl.gameboj.gui;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triple tampon d'images, permettant à un fil producteur (l'émulation) de
+ * transmettre ses images à un fil consommateur (l'affichage) sans verrou :
+ * le producteur dessine dans le tampon arrière, qu'il échange avec le tampon
+ * du milieu lorsqu'une image est terminée, et le consommateur échange son
+ * tampon avant avec celui du milieu lorsqu'une nouvelle image s'y trouve
+ */
+final class TripleBuffer {
+
+    // Le tampon du milieu est désigné par son index, auquel est ajouté FRESH
+    // s'il contient une image que le consommateur n'a pas encore prise
+    private static final int FRESH = 4;
+    private static final int INDEX = FRESH - 1;
+
+    private final int[][] buffers;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0, front = 2;
+
+    /**
+     * Construit un triple tampon dont les trois tampons contiennent le nombre
+     * donné de pixels, tous de la valeur donnée
+     *
+     * @param size
+     * @param value
+     */
+    TripleBuffer(int size, int value) {
+
+        buffers = new int[3][size];
+        for (int[] b : buffers) {
+            Arrays.fill(b, value);
+        }
+    }
+
+    /**
+     * Retourne le tampon dans lequel le producteur dessine l'image suivante ;
+     * réservé au producteur
+     *
+     * @return le tampon arrière
+     */
+    int[] back() {
+        return buffers[back];
+    }
+
+    /**
+     * Publie l'image contenue dans le tampon arrière, qui est échangé avec
+     * celui du milieu ; réservé au producteur
+     */
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    /**
+     * Indique si la dernière image publiée n'a pas encore été prise par le
+     * consommateur ; peut être appelée depuis n'importe quel fil
+     *
+     * @return vrai ssi le tampon du milieu contient une nouvelle image
+     */
+    boolean pending() {
+        return (middle.get() & FRESH) != 0;
+    }
+
+    /**
+     * Prend, si elle existe, la dernière image publiée, qui devient celle du
+     * tampon avant ; réservé au consommateur
+     *
+     * @return vrai ssi une nouvelle image a été prise
+     */
+    boolean update() {
+
+        if (!pending()) {
+            return false;
+        }
+        front = middle.getAndSet(front) & INDEX;
+        return true;
+    }
+
+    /**
+     * Retourne le tampon contenant la dernière image prise par update ;
+     * réservé au consommateur
+     *
+     * @return le tampon avant
+     */
+    int[] front() {
+        return buffers[front];
+    }
+}
@@ -0,0 +1,201 @@
+package ch.epfl.gameboj.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.memory.Rom;
+
+/**
+ * Simule sans interface graphique plusieurs Game Boy indépendants exécutant le
+ * même jeu, répartis sur un ensemble de fils, et mesure le nombre total
+ * d'images simulées par seconde ; aucune image n'est dessinée
+ *
+ * Le fichier du jeu est projeté en mémoire une seule fois, et toutes les
+ * instances partagent la même mémoire morte, chacune ayant sa propre
+ * cartouche, dont le contrôleur a un état modifiable
+ */
+public final class BatchRunner {
+
+    private final Rom rom;
+    private final InputScript script;
+
+    /**
+     * Construit un lanceur simulant le jeu dont la mémoire morte est donnée,
+     * piloté par le script donné
+     *
+     * @param rom
+     * @param script
+     * @throws IllegalArgumentException
+     *             si la mémoire ne constitue pas une cartouche valide
+     */
+    public BatchRunner(Rom rom, InputScript script) {
+
+        this.rom = Cartridge.checkRom(rom);
+        this.script = script;
+    }
+
+    /**
+     * Simule, au moyen du nombre de fils donné, le nombre d'instances donné
+     * pendant le nombre d'images donné chacune
+     *
+     * @param instances
+     * @param frames
+     * @param threads
+     * @return le résultat de la simulation
+     * @throws IllegalArgumentException
+     *             si l'un des nombres n'est pas strictement positif
+     * @throws InterruptedException
+     *             si le fil appelant est interrompu pendant la simulation
+     */
+    public Result run(int instances, int frames, int threads)
+            throws InterruptedException {
+
+        Preconditions.checkArgument(instances > 0 && frames > 0 && threads > 0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+
+            List<Future<GameBoy>> results = new ArrayList<>();
+            for (int i = 0; i < instances; ++i)
+                results.add(pool.submit(() -> runOne(frames)));
+
+            long cycles = 0;
+            for (Future<GameBoy> f : results)
+                cycles += f.get().cycles();
+
+            return new Result(instances, (long) instances * frames, cycles,
+                    System.nanoTime() - start);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private GameBoy runOne(int frames) {
+
+        // Les images ne sont jamais vues, il est inutile de les dessiner ; la
+        // traduction du code ne change pas le résultat de la simulation
+        GameBoy gameBoy = new GameBoy(Cartridge.ofRom(rom));
+        gameBoy.lcdController().setFrameSkip(() -> true);
+        gameBoy.setTranslation(true);
+        for (int frame = 0; frame < frames; ++frame) {
+            script.apply(frame, gameBoy.joypad());
+            gameBoy.runUntil((frame + 1L) * LcdController.FRAME_CYCLES);
+        }
+        return gameBoy;
+    }
+
+    /**
+     * Résultat d'une simulation
+     */
+    public static final class Result {
+
+        private final int instances;
+        private final long frames, cycles, nanos;
+
+        private Result(int instances, long frames, long cycles, long nanos) {
+
+            this.instances = instances;
+            this.frames = frames;
+            this.cycles = cycles;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return le nombre d'instances simulées
+         */
+        public int instances() {
+            return instances;
+        }
+
+        /**
+         * @return le nombre total d'images simulées
+         */
+        public long frames() {
+            return frames;
+        }
+
+        /**
+         * @return le nombre total de cycles simulés
+         */
+        public long cycles() {
+            return cycles;
+        }
+
+        /**
+         * @return la durée de la simulation, en nanosecondes
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+        /**
+         * @return le nombre total d'images simulées par seconde
+         */
+        public double framesPerSecond() {
+            return frames * 1e9 / nanos;
+        }
+
+        /**
+         * @return le rapport entre la vitesse totale de simulation et celle
+         *         d'un vrai Game Boy
+         */
+        public double speedup() {
+            return cycles / (nanos * GameBoy.CYCLES_PER_NANOSECOND);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d instances, %d frames in %.2f s: %.0f frames/s (x%.1f)",
+                    instances, frames, nanos / 1e9, framesPerSecond(),
+                    speedup());
+        }
+    }
+
+    /**
+     * Lance la simulation décrite par les arguments : le fichier du jeu, puis
+     * facultativement le nombre d'instances, le nombre d'images par instance,
+     * le nombre de fils et le fichier du script
+     *
+     * @param args
+     * @throws IOException
+     *             en cas d'erreur de lecture d'un fichier
+     * @throws InterruptedException
+     *             si le fil principal est interrompu
+     */
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+
+        if (args.length < 1 || args.length > 5) {
+            System.err.println("usage: BatchRunner rom [instances [frames"
+                    + " [threads [script]]]]");
+            System.exit(1);
+        }
+
+        int cpus = Runtime.getRuntime().availableProcessors();
+        Rom rom = Rom.mapFile(new File(args[0]));
+        int instances = args.length > 1 ? Integer.parseInt(args[1]) : cpus;
+        int frames = args.length > 2 ? Integer.parseInt(args[2]) : 3600;
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                : Math.min(instances, cpus);
+        InputScript script = args.length > 4
+                ? InputScript.ofFile(new File(args[4]))
+                : InputScript.EMPTY;
+
+        System.out.println(new BatchRunner(rom, script)
+                .run(instances, frames, threads));
+    }
+}
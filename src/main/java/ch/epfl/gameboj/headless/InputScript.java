@@ -0,0 +1,140 @@
+package ch.epfl.gameboj.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Joypad;
+
+/**
+ * Suite immuable de pressions et relâchements de touches, chacun associé au
+ * numéro de l'image au début de laquelle il a lieu
+ *
+ * Sous forme textuelle, chaque ligne non vide et ne commençant pas par # décrit
+ * un événement, composé du numéro de l'image, puis du nom de la touche précédé
+ * de + pour une pression ou de - pour un relâchement, par exemple :
+ *
+ * <pre>
+ * 120 +START
+ * 126 -START
+ * </pre>
+ */
+public final class InputScript {
+
+    /**
+     * Script ne contenant aucun événement
+     */
+    public static final InputScript EMPTY = new InputScript(new int[0],
+            new Joypad.Key[0], new boolean[0]);
+
+    private final int[] frames;
+    private final Joypad.Key[] keys;
+    private final boolean[] pressed;
+
+    private InputScript(int[] frames, Joypad.Key[] keys, boolean[] pressed) {
+
+        this.frames = frames;
+        this.keys = keys;
+        this.pressed = pressed;
+    }
+
+    /**
+     * Retourne le script décrit par les lignes données, dont les numéros
+     * d'images doivent être croissants
+     *
+     * @param lines
+     * @return le script correspondant
+     * @throws IllegalArgumentException
+     *             si une ligne est mal formée, ou si les numéros d'images ne
+     *             sont pas croissants
+     */
+    public static InputScript parse(List<String> lines) {
+
+        List<String> events = new ArrayList<>();
+        for (String line : lines) {
+            String l = line.strip();
+            if (!l.isEmpty() && !l.startsWith("#"))
+                events.add(l);
+        }
+
+        int[] frames = new int[events.size()];
+        Joypad.Key[] keys = new Joypad.Key[events.size()];
+        boolean[] pressed = new boolean[events.size()];
+
+        for (int i = 0; i < events.size(); ++i) {
+
+            String[] parts = events.get(i).split("\\s+");
+            Preconditions.checkArgument(parts.length == 2
+                    && parts[1].length() > 1
+                    && (parts[1].charAt(0) == '+' || parts[1].charAt(0) == '-'));
+
+            try {
+                frames[i] = Integer.parseInt(parts[0]);
+                keys[i] = Joypad.Key.valueOf(parts[1].substring(1));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(events.get(i), e);
+            }
+            pressed[i] = parts[1].charAt(0) == '+';
+
+            Preconditions.checkArgument(
+                    frames[i] >= 0 && (i == 0 || frames[i] >= frames[i - 1]));
+        }
+        return new InputScript(frames, keys, pressed);
+    }
+
+    /**
+     * Retourne le script décrit par le fichier texte donné
+     *
+     * @param file
+     * @return le script correspondant
+     * @throws IOException
+     *             en cas d'erreur d'entrée-sortie
+     * @throws IllegalArgumentException
+     *             si le fichier est mal formé
+     */
+    public static InputScript ofFile(File file) throws IOException {
+        return parse(Files.readAllLines(file.toPath()));
+    }
+
+    /**
+     * @return le nombre d'événements du script
+     */
+    public int size() {
+        return frames.length;
+    }
+
+    /**
+     * Applique au clavier donné, dans l'ordre, les événements ayant lieu au
+     * début de l'image donnée
+     *
+     * @param frame
+     * @param joypad
+     */
+    public void apply(int frame, Joypad joypad) {
+
+        for (int i = firstIndex(frame); i < frames.length
+                && frames[i] == frame; ++i) {
+            if (pressed[i])
+                joypad.keyPressed(keys[i]);
+            else
+                joypad.keyReleased(keys[i]);
+        }
+    }
+
+    // L'index du premier événement ayant lieu à l'image donnée ou après
+    private int firstIndex(int frame) {
+
+        int low = 0, high = frames.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (frames[mid] < frame)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,68 @@
+package ch.epfl.gameboj.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Profiler;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Profile sans interface graphique le code d'un jeu durant un nombre donné
+ * d'images, piloté par un script facultatif : affiche les adresses les plus
+ * coûteuses et écrit l'arbre des appels au format des piles repliées, dont
+ * flamegraph.pl ou speedscope tirent un graphe en flammes
+ */
+public final class ProfileRunner {
+
+    private static final int HOT_SPOTS = 20;
+
+    private ProfileRunner() {}
+
+    /**
+     * Lance le profilage décrit par les arguments : le fichier du jeu, le
+     * nombre d'images, le fichier des piles repliées, puis facultativement le
+     * fichier du script
+     *
+     * @param args
+     * @throws IOException
+     *             en cas d'erreur de lecture ou d'écriture d'un fichier
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("usage: ProfileRunner rom frames output"
+                    + " [script]");
+            System.exit(1);
+        }
+
+        GameBoy gameBoy = new GameBoy(
+                Cartridge.ofMappedFile(new File(args[0])));
+        int frames = Integer.parseInt(args[1]);
+        InputScript script = args.length > 3
+                ? InputScript.ofFile(new File(args[3]))
+                : InputScript.EMPTY;
+
+        Profiler profiler = new Profiler();
+        gameBoy.setProfiler(profiler);
+        gameBoy.lcdController().setFrameSkip(() -> true);
+
+        for (int frame = 0; frame < frames; ++frame) {
+            script.apply(frame, gameBoy.joypad());
+            gameBoy.runUntil((frame + 1L) * LcdController.FRAME_CYCLES);
+        }
+
+        System.out.printf("%d cycles profiled over %d frames%n",
+                profiler.totalCycles(), frames);
+        for (Profiler.HotSpot spot : profiler.hotSpots(HOT_SPOTS))
+            System.out.printf("%s  %5.2f %%%n", spot,
+                    100.0 * spot.cycles() / profiler.totalCycles());
+
+        try (Writer out = Files.newBufferedWriter(new File(args[2]).toPath())) {
+            profiler.writeFoldedStacks(out);
+        }
+    }
+}
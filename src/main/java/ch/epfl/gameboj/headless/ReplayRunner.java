@@ -0,0 +1,54 @@
+package ch.epfl.gameboj.headless;
+
+import java.io.File;
+import java.io.IOException;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Movie;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.memory.Rom;
+
+/**
+ * Rejoue sans interface graphique, le plus vite possible, un film enregistré,
+ * sans en dessiner les images, et affiche la vitesse de simulation ainsi
+ * qu'une somme de contrôle de l'état simulé final du Game Boy, qui permet de
+ * vérifier qu'une modification du simulateur ne change pas son comportement
+ */
+public final class ReplayRunner {
+
+    private ReplayRunner() {}
+
+    /**
+     * Rejoue le film donné par les arguments : le fichier du jeu, celui du
+     * film, puis facultativement le nombre de répétitions
+     *
+     * @param args
+     * @throws IOException
+     *             en cas d'erreur de lecture d'un fichier
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("usage: ReplayRunner rom movie [runs]");
+            System.exit(1);
+        }
+
+        Rom rom = Rom.mapFile(new File(args[0]));
+        Movie movie = Movie.readFile(new File(args[1]));
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        for (int run = 0; run < runs; ++run) {
+
+            long start = System.nanoTime();
+            GameBoy gameBoy = movie.replay(Cartridge.ofRom(rom));
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            double frames = (double) (movie.endCycle() - movie.startCycle())
+                    / LcdController.FRAME_CYCLES;
+            System.out.printf("%d events, %.0f frames in %.2f s: %.0f frames/s,"
+                    + " state %08x%n", movie.size(), frames, seconds,
+                    frames / seconds, gameBoy.emulatedStateChecksum());
+        }
+    }
+}
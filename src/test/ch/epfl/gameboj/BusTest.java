@@ -5,6 +5,7 @@ package ch.epfl.gameboj;
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -90,6 +91,62 @@ class BusTest {
             assertEquals((i * 2018) & 0xFF, b.read(i));
     }
 
+    @Test
+    void attachFailsForInvalidAddressRanges() {
+        Bus b = new Bus();
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(new RangedComponent(0x10, 0x10)));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(new RangedComponent(0x10, 0x10001)));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(new RangedComponent(-1, 0x10)));
+    }
+
+    @Test
+    void writeOnlyReachesComponentsOfThePage() {
+        RangedComponent low = new RangedComponent(0x0000, 0x8000);
+        RangedComponent high = new RangedComponent(0xFF00, 0xFF01);
+        Bus b = new Bus();
+        b.attach(low);
+        b.attach(high);
+        b.write(0xC000, 42);
+        assertFalse(low.wasWritten());
+        assertFalse(high.wasWritten());
+        b.write(0x7FFF, 42);
+        assertTrue(low.wasWritten());
+        assertFalse(high.wasWritten());
+    }
+
+    @Test
+    void accessesWithinSharedPageOnlyReachTheirOwner() {
+        RangedComponent joypad = new RangedComponent(0xFF00, 0xFF01, 1);
+        RangedComponent timer = new RangedComponent(0xFF04, 0xFF08, 2);
+        RangedComponent highRam = new RangedComponent(0xFF80, 0xFFFF, 3);
+        Bus b = new Bus();
+        b.attach(joypad);
+        b.attach(timer);
+        b.attach(highRam);
+        assertEquals(1, b.read(0xFF00));
+        assertEquals(2, b.read(0xFF05));
+        assertEquals(3, b.read(0xFF80));
+        assertEquals(0xFF, b.read(0xFF40));
+        b.write(0xFF90, 42);
+        b.write(0xFF40, 42);
+        assertEquals(1, joypad.accesses());
+        assertEquals(1, timer.accesses());
+        assertEquals(2, highRam.accesses());
+    }
+
+    @Test
+    void readKeepsAttachmentOrderForOverlappingRanges() {
+        Bus b = new Bus();
+        b.attach(new RangedComponent(0x0000, 0x0100, 1));
+        b.attach(new RangedComponent(0x0000, 0x8000, 2));
+        for (int a = 0; a < 0x8000; ++a)
+            assertEquals(a < 0x100 ? 1 : 2, b.read(a));
+        assertEquals(0xFF, b.read(0x8000));
+    }
+
     @Test
     void writeFailsForInvalidAddress() {
         Random rng = newRandom();
@@ -145,3 +202,41 @@ class SimpleComponent implements Component {
             value = d;
     }
 }
+
+class RangedComponent implements Component {
+    private final int start, end, value;
+    private boolean wasWritten;
+    private int accesses;
+
+    public RangedComponent(int start, int end, int value) {
+        this.start = start;
+        this.end = end;
+        this.value = value;
+    }
+
+    public RangedComponent(int start, int end) {
+        this(start, end, 0);
+    }
+
+    boolean wasWritten() { return wasWritten; }
+
+    int accesses() { return accesses; }
+
+    @Override
+    public int read(int a) {
+        ++accesses;
+        return start <= a && a < end ? value : Component.NO_DATA;
+    }
+
+    @Override
+    public void write(int a, int d) {
+        ++accesses;
+        if (start <= a && a < end)
+            wasWritten = true;
+    }
+
+    @Override
+    public int[] addressRanges() {
+        return new int[] { start, end };
+    }
+}
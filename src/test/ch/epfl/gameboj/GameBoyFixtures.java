@@ -0,0 +1,37 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import ch.epfl.gameboj.component.memory.Rom;
+
+/**
+ * Mémoires mortes et méthodes utilitaires partagées par les tests qui simulent
+ * un Game Boy complet
+ */
+final class GameBoyFixtures {
+
+    static final Rom MARIO = rom("Super Mario Land (JUE) (V1.1) [!].gb");
+    static final Rom TETRIS = rom("Tetris (JUE) (V1.1) [!].gb");
+
+    private GameBoyFixtures() {
+    }
+
+    static Rom rom(String name) {
+        try {
+            return Rom.mapFile(new File(name));
+        } catch (IOException e) {
+            throw new Error(e);
+        }
+    }
+
+    static byte[] state(GameBoy gb) {
+        ByteBuffer b = ByteBuffer.allocate(gb.stateSize());
+        gb.saveState(b);
+        assertEquals(0, b.remaining());
+        return b.array();
+    }
+}
@@ -0,0 +1,164 @@
+package ch.epfl.gameboj;
+
+import static ch.epfl.gameboj.GameBoyFixtures.MARIO;
+import static ch.epfl.gameboj.GameBoyFixtures.TETRIS;
+import static ch.epfl.gameboj.GameBoyFixtures.state;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+class GameBoyStateTest {
+
+    private static GameBoy runFrames(GameBoy gb, int frames) {
+        gb.runUntil(frames * (long) LcdController.FRAME_CYCLES);
+        return gb;
+    }
+
+    @Test
+    void restoredGameBoyBehavesLikeOriginal() {
+        GameBoy gb1 = runFrames(new GameBoy(Cartridge.ofRom(MARIO)), 200);
+        gb1.joypad().keyPressed(Joypad.Key.START);
+        byte[] saved = state(gb1);
+
+        runFrames(gb1, 500);
+        byte[] expected = state(gb1);
+
+        GameBoy gb2 = runFrames(new GameBoy(Cartridge.ofRom(MARIO)), 30);
+        gb2.loadState(ByteBuffer.wrap(saved));
+        assertEquals(200L * LcdController.FRAME_CYCLES, gb2.cycles());
+        assertArrayEquals(saved, state(gb2));
+
+        runFrames(gb2, 500);
+        assertArrayEquals(expected, state(gb2));
+        assertEquals(gb1.lcdController().currentImage(),
+                gb2.lcdController().currentImage());
+    }
+
+    @Test
+    void loadStateRewritesLinesAlreadyDrawnInFrameBuffer() {
+        int[] colors = { 1, 2, 3, 4 };
+        int[] p1 = new int[LcdController.LCD_WIDTH * LcdController.LCD_HEIGHT];
+        GameBoy gb1 = new GameBoy(Cartridge.ofRom(MARIO));
+        gb1.lcdController().setFrameBuffer(p1, colors);
+        gb1.runUntil(300L * LcdController.FRAME_CYCLES + 5000);
+        byte[] saved = state(gb1);
+
+        int[] p2 = new int[p1.length];
+        GameBoy gb2 = new GameBoy(Cartridge.ofRom(MARIO));
+        gb2.lcdController().setFrameBuffer(p2, colors);
+        gb2.loadState(ByteBuffer.wrap(saved));
+
+        // Registre LY
+        int drawn = gb1.bus().read(AddressMap.REGS_LCDC_START + 4)
+                * LcdController.LCD_WIDTH;
+        assertTrue(drawn > 0);
+        assertArrayEquals(Arrays.copyOf(p1, drawn), Arrays.copyOf(p2, drawn));
+
+        runFrames(gb1, 301);
+        runFrames(gb2, 301);
+        assertArrayEquals(p1, p2);
+    }
+
+    @Test
+    void loadStateFailsForIncompatibleStateWithoutChangingGameBoy() {
+        GameBoy mario = runFrames(new GameBoy(Cartridge.ofRom(MARIO)), 10);
+        GameBoy tetris = runFrames(new GameBoy(Cartridge.ofRom(TETRIS)), 20);
+        byte[] before = state(mario);
+
+        byte[] t = state(tetris);
+        ByteBuffer padded = ByteBuffer.allocate(Math.max(t.length, before.length));
+        padded.put(t).rewind();
+        assertThrows(IllegalArgumentException.class,
+                () -> mario.loadState(padded));
+
+        byte[] corrupt = before.clone();
+        corrupt[0] ^= 1;
+        assertThrows(IllegalArgumentException.class,
+                () -> mario.loadState(ByteBuffer.wrap(corrupt)));
+
+        assertThrows(BufferUnderflowException.class, () -> mario
+                .loadState(ByteBuffer.wrap(before, 0, before.length - 1)));
+
+        assertArrayEquals(before, state(mario));
+    }
+
+    @Test
+    void forkBehavesLikeOriginalAndIsIndependent() {
+        GameBoy original = runFrames(new GameBoy(Cartridge.ofRom(MARIO)), 200);
+        GameBoy twin = runFrames(new GameBoy(Cartridge.ofRom(MARIO)), 200);
+        GameBoy fork = original.fork();
+        assertArrayEquals(state(original), state(fork));
+
+        fork.joypad().keyPressed(Joypad.Key.START);
+        runFrames(fork, 400);
+        runFrames(original, 400);
+        runFrames(twin, 400);
+        assertArrayEquals(state(twin), state(original));
+
+        GameBoy fork2 = twin.fork();
+        runFrames(fork2, 450);
+        runFrames(twin, 450);
+        assertArrayEquals(state(twin), state(fork2));
+        assertEquals(twin.lcdController().currentImage(),
+                fork2.lcdController().currentImage());
+    }
+
+    @Test
+    void stateTakenInSkippedFrameNeverPublishesTornImage() {
+        GameBoy skipped = new GameBoy(Cartridge.ofRom(MARIO));
+        skipped.lcdController().setFrameSkip(() -> true);
+        GameBoy drawn = new GameBoy(Cartridge.ofRom(MARIO));
+        long middle = 300L * LcdController.FRAME_CYCLES
+                + LcdController.FRAME_CYCLES / 2;
+        skipped.runUntil(middle);
+        drawn.runUntil(middle);
+
+        GameBoy restored = new GameBoy(Cartridge.ofRom(MARIO));
+        restored.loadState(ByteBuffer.wrap(state(skipped)));
+        GameBoy[] copies = { skipped.fork(), restored };
+        int[] published = new int[copies.length];
+        for (int i = 0; i < copies.length; ++i) {
+            int j = i;
+            copies[i].lcdController().setFrameListener(() -> ++published[j]);
+        }
+
+        // Chaque pas contient exactement un début de VBLANK ; l'image en
+        // cours lors de la copie reste sautée, les suivantes sont dessinées
+        for (int step = 1; step <= 3; ++step) {
+            long cycle = middle + step * (long) LcdController.FRAME_CYCLES;
+            drawn.runUntil(cycle);
+            for (int i = 0; i < copies.length; ++i) {
+                copies[i].runUntil(cycle);
+                assertEquals(step - 1, published[i]);
+                if (step > 1)
+                    assertEquals(drawn.lcdController().currentImage(),
+                            copies[i].lcdController().currentImage());
+            }
+        }
+    }
+
+    @Test
+    void emulatedStateChecksumDoesNotDependOnSkippedFrames() {
+        GameBoy drawn = runFrames(new GameBoy(Cartridge.ofRom(TETRIS)), 300);
+        GameBoy skipped = new GameBoy(Cartridge.ofRom(TETRIS));
+        skipped.lcdController().setFrameSkip(() -> true);
+        runFrames(skipped, 300);
+
+        assertTrue(!Arrays.equals(state(drawn), state(skipped)));
+        assertEquals(drawn.emulatedStateChecksum(),
+                skipped.emulatedStateChecksum());
+        runFrames(drawn, 301);
+        assertTrue(drawn.emulatedStateChecksum() != skipped.emulatedStateChecksum());
+    }
+}
@@ -0,0 +1,107 @@
+package ch.epfl.gameboj;
+
+import static ch.epfl.gameboj.GameBoyFixtures.MARIO;
+import static ch.epfl.gameboj.GameBoyFixtures.state;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+class MovieTest {
+
+    private static Movie roundTrip(Movie m) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        m.write(out);
+        return Movie.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    // Simule le Game Boy par tranches de tailles aléatoires, en pressant et
+    // relâchant des touches aléatoires entre elles
+    private static void play(Random rng, GameBoy gb, Movie.Recorder r,
+            int frames) {
+        long end = gb.cycles() + frames * (long) LcdController.FRAME_CYCLES;
+        Joypad.Key[] keys = Joypad.Key.values();
+        while (gb.cycles() < end) {
+            gb.runUntil(Math.min(end, gb.cycles() + 1 + rng.nextInt(40_000)));
+            Joypad.Key k = keys[rng.nextInt(keys.length)];
+            if (rng.nextBoolean())
+                r.keyPressed(k);
+            else
+                r.keyReleased(k);
+        }
+    }
+
+    @Test
+    void replayReproducesRecordedSession() throws IOException {
+        Random rng = newRandom();
+        GameBoy gb = new GameBoy(Cartridge.ofRom(MARIO));
+        Movie.Recorder r = new Movie.Recorder(gb);
+        play(rng, gb, r, 600);
+        Movie m = roundTrip(r.build());
+
+        assertEquals(0, m.startCycle());
+        assertEquals(gb.cycles(), m.endCycle());
+        assertTrue(m.size() > 0);
+        assertEquals(gb.emulatedStateChecksum(),
+                m.replay(Cartridge.ofRom(MARIO)).emulatedStateChecksum());
+    }
+
+    @Test
+    void replayOfMovieStartedMidGameStartsFromSavedState()
+            throws IOException {
+        Random rng = newRandom();
+        GameBoy gb = new GameBoy(Cartridge.ofRom(MARIO));
+        gb.runUntil(200L * LcdController.FRAME_CYCLES + 123);
+        Movie.Recorder r = new Movie.Recorder(gb);
+        play(rng, gb, r, 300);
+        Movie m = roundTrip(r.build());
+
+        assertEquals(200L * LcdController.FRAME_CYCLES + 123, m.startCycle());
+        assertEquals(gb.emulatedStateChecksum(),
+                m.replay(Cartridge.ofRom(MARIO)).emulatedStateChecksum());
+    }
+
+    @Test
+    void truncateForgetsEventsAfterRewind() {
+        GameBoy gb = new GameBoy(Cartridge.ofRom(MARIO));
+        gb.runUntil(10);
+        Movie.Recorder r = new Movie.Recorder(gb);
+        RewindBuffer rewind = new RewindBuffer(gb, 1, Long.MAX_VALUE);
+
+        gb.runUntil(1000);
+        r.keyPressed(Joypad.Key.A);
+        rewind.snapshot();
+        gb.runUntil(2000);
+        r.keyPressed(Joypad.Key.B);
+        gb.runUntil(3000);
+
+        rewind.rewind();
+        assertTrue(r.truncate());
+        assertEquals(1, r.build().size());
+
+        gb.loadState(ByteBuffer.wrap(state(new GameBoy(Cartridge.ofRom(MARIO)))));
+        assertFalse(r.truncate());
+        assertThrows(IllegalStateException.class, () -> r.build());
+    }
+
+    @Test
+    void readFailsForInvalidData() {
+        assertThrows(IllegalArgumentException.class, () -> Movie
+                .read(new ByteArrayInputStream(new byte[32])));
+        assertThrows(IOException.class, () -> Movie
+                .read(new ByteArrayInputStream(new byte[3])));
+    }
+}
@@ -0,0 +1,117 @@
+package ch.epfl.gameboj;
+
+import static ch.epfl.gameboj.GameBoyFixtures.state;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.PerformanceCounters.Region;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.cpu.Opcode;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+class PerformanceCountersTest {
+
+    private static final String TETRIS = "Tetris (JUE) (V1.1) [!].gb";
+    private static final int FRAMES = 300;
+
+    private static GameBoy tetris() throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File(TETRIS)));
+    }
+
+    @Test
+    void countersAreDisabledByDefault() throws IOException {
+        assertNull(tetris().counters());
+    }
+
+    @Test
+    void countersDescribeTheSimulation() throws IOException {
+        GameBoy gb = tetris();
+        PerformanceCounters counters = new PerformanceCounters();
+        gb.setCounters(counters);
+        gb.runUntil(FRAMES * (long) LcdController.FRAME_CYCLES);
+
+        PerformanceCounters.Snapshot s = counters.snapshot();
+        // l'écran est éteint quelques images au démarrage du jeu, parfois
+        // au milieu d'une image
+        assertTrue(s.frames() > FRAMES - 20 && s.frames() <= FRAMES);
+        assertTrue(s.scanlines() >= LcdController.LCD_HEIGHT * s.frames());
+        assertTrue(s.dmaTransfers() > 0);
+        assertTrue(s.interrupts().get(Cpu.Interrupt.VBLANK) > 0);
+        assertTrue(s.instructions().get(Opcode.Family.LD_R8_N8) > 0);
+        assertTrue(s.instructions().get(Opcode.Family.RET) > 0);
+        assertTrue(s.reads().get(Region.ROM) > s.instructionCount());
+        assertTrue(s.writes().get(Region.HIGH_RAM) > 0);
+        assertTrue(s.instructionCount() > 0);
+    }
+
+    @Test
+    void countersDoNotChangeTheSimulation() throws IOException {
+        GameBoy counted = tetris(), plain = tetris();
+        counted.setCounters(new PerformanceCounters());
+        counted.runUntil(FRAMES * (long) LcdController.FRAME_CYCLES);
+        plain.runUntil(FRAMES * (long) LcdController.FRAME_CYCLES);
+        assertArrayEquals(state(plain), state(counted));
+    }
+
+    @Test
+    void removedCountersStopCounting() throws IOException {
+        GameBoy gb = tetris();
+        PerformanceCounters counters = new PerformanceCounters();
+        gb.setCounters(counters);
+        gb.runUntil(LcdController.FRAME_CYCLES);
+        long instructions = counters.getInstructionCount();
+
+        gb.setCounters(null);
+        gb.runUntil(10L * LcdController.FRAME_CYCLES);
+        assertEquals(instructions, counters.getInstructionCount());
+
+        counters.reset();
+        assertEquals(0, counters.getInstructionCount());
+        assertTrue(counters.snapshot().reads().isEmpty());
+    }
+
+    @Test
+    void regionsCoverTheWholeAddressSpace() {
+        int next = 0;
+        for (Region r : Region.values()) {
+            assertEquals(next, r.start());
+            next = r.end();
+        }
+        assertEquals(0x10000, next);
+    }
+
+    @Test
+    void countersAreExportedThroughJmx() throws Exception {
+        GameBoy gb = tetris();
+        PerformanceCounters counters = new PerformanceCounters();
+        gb.setCounters(counters);
+        gb.runUntil(FRAMES * (long) LcdController.FRAME_CYCLES);
+
+        ObjectName name = counters.register("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(counters.getFrames(), server.getAttribute(name, "Frames"));
+            assertTrue(server.getAttribute(name, "Reads") != null);
+            Map<String, Long> reads = counters.getReads();
+            assertEquals(counters.snapshot().reads().get(Region.ROM), reads.get("ROM"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> counters.register("test"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ch.epfl.gameboj;
+
+import static ch.epfl.gameboj.GameBoyFixtures.MARIO;
+import static ch.epfl.gameboj.GameBoyFixtures.state;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+class ProfilerTest {
+
+    // Boucle appelant 0010 (qui appelle 0020), 0020, puis 0030, qui dépile
+    // son adresse de retour et saute au début de la boucle
+    private static final int[] PROGRAM = {
+            0x31, 0xFE, 0xDF, // 0000 LD SP, DFFE
+            0xCD, 0x10, 0x00, // 0003 CALL 0010
+            0xCD, 0x20, 0x00, // 0006 CALL 0020
+            0xCD, 0x30, 0x00, // 0009 CALL 0030
+    };
+    private static final int[][] ROUTINES = {
+            { 0x10, 0xCD, 0x20, 0x00, 0xC9 }, // CALL 0020, RET
+            { 0x20, 0x00, 0xC9 },             // NOP, RET
+            { 0x30, 0xE1, 0xC3, 0x03, 0x00 }, // POP HL, JP 0003
+    };
+
+    private static Cpu newCpu(Profiler[] profiler) {
+        byte[] rom = new byte[0x8000];
+        for (int i = 0; i < PROGRAM.length; ++i)
+            rom[i] = (byte) PROGRAM[i];
+        for (int[] r : ROUTINES)
+            for (int i = 1; i < r.length; ++i)
+                rom[r[0] + i - 1] = (byte) r[i];
+
+        Bus bus = new Bus();
+        Cartridge cartridge = Cartridge.ofBytes(rom);
+        cartridge.attachTo(bus);
+        new RamController(new Ram(AddressMap.WORK_RAM_SIZE),
+                AddressMap.WORK_RAM_START).attachTo(bus);
+        Cpu cpu = new Cpu();
+        cpu.attachTo(bus);
+        profiler[0] = new Profiler();
+        profiler[0].setRomBank(cartridge::romBank);
+        cpu.setProfiler(profiler[0]);
+        return cpu;
+    }
+
+    private static Map<String, Long> folded(Profiler profiler)
+            throws IOException {
+        StringBuilder b = new StringBuilder();
+        profiler.writeFoldedStacks(b);
+        Map<String, Long> stacks = new HashMap<>();
+        for (String line : b.toString().split("\n")) {
+            int space = line.lastIndexOf(' ');
+            stacks.put(line.substring(0, space),
+                    Long.parseLong(line.substring(space + 1)));
+        }
+        return stacks;
+    }
+
+    @Test
+    void callTreeFollowsCallsAndDiscardedReturns() throws IOException {
+        Profiler[] profiler = new Profiler[1];
+        Cpu cpu = newCpu(profiler);
+        long cycles = 10_000;
+        for (long c = 0; c < cycles; )
+            c += cpu.step(c, cycles - c);
+
+        Map<String, Long> stacks = folded(profiler[0]);
+        assertEquals(Map.of("root", 0L, "root;00:0010", 0L,
+                "root;00:0010;00:0020", 0L, "root;00:0020", 0L,
+                "root;00:0030", 0L).keySet(), stacks.keySet());
+        assertEquals(profiler[0].totalCycles(),
+                stacks.values().stream().mapToLong(Long::longValue).sum());
+        assertTrue(profiler[0].depth() <= 2);
+        // Les deux appels de 0020 diffèrent au plus d'un NOP et d'un RET
+        assertTrue(Math.abs(stacks.get("root;00:0020")
+                - stacks.get("root;00:0010;00:0020")) <= 1 + 4);
+    }
+
+    @Test
+    void totalCyclesMatchSimulatedCycles() throws IOException {
+        GameBoy gb = new GameBoy(Cartridge
+                .ofFile(new File("Super Mario Land (JUE) (V1.1) [!].gb")));
+        Profiler profiler = new Profiler();
+        gb.setProfiler(profiler);
+        gb.runUntil(300L * LcdController.FRAME_CYCLES);
+
+        // Le processeur est inactif durant les HALT, qui occupent la plus
+        // grande partie de chaque image
+        assertTrue(profiler.totalCycles() <= gb.cycles());
+        assertTrue(profiler.totalCycles() > 0);
+
+        List<Profiler.HotSpot> spots = profiler.hotSpots(10);
+        assertEquals(10, spots.size());
+        for (int i = 1; i < spots.size(); ++i)
+            assertTrue(spots.get(i - 1).cycles() >= spots.get(i).cycles());
+
+        Map<String, Long> stacks = folded(profiler);
+        assertEquals(profiler.totalCycles(),
+                stacks.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void bootRomCodeIsNotCreditedToTheCartridge() throws IOException {
+        GameBoy gb = new GameBoy(Cartridge.ofRom(MARIO));
+        Profiler profiler = new Profiler();
+        gb.setProfiler(profiler);
+
+        // La mémoire de démarrage est encore active
+        gb.runUntil(10_000);
+        List<Profiler.HotSpot> spots = profiler.hotSpots(Integer.MAX_VALUE);
+        assertTrue(spots.size() > 0);
+        for (Profiler.HotSpot spot : spots) {
+            assertEquals(Profiler.BOOT_ROM_BANK, spot.bank());
+            assertTrue(spot.address() < AddressMap.BOOT_ROM_END);
+            assertTrue(spot.toString().startsWith("BOOT:"));
+        }
+        for (String stack : folded(profiler).keySet())
+            assertFalse(stack.contains("00:00"));
+
+        gb.runUntil(300L * LcdController.FRAME_CYCLES);
+        long bootCycles = 0, bank0Cycles = 0;
+        for (Profiler.HotSpot spot : profiler.hotSpots(Integer.MAX_VALUE)) {
+            if (spot.bank() == Profiler.BOOT_ROM_BANK)
+                bootCycles += spot.cycles();
+            else if (spot.bank() == 0)
+                bank0Cycles += spot.cycles();
+        }
+        assertTrue(bootCycles > 0 && bank0Cycles > 0);
+    }
+
+    @Test
+    void profilerDoesNotChangeTheSimulation() throws IOException {
+        File rom = new File("Tetris (JUE) (V1.1) [!].gb");
+        GameBoy profiled = new GameBoy(Cartridge.ofFile(rom));
+        GameBoy plain = new GameBoy(Cartridge.ofFile(rom));
+        profiled.setProfiler(new Profiler());
+        profiled.runUntil(200L * LcdController.FRAME_CYCLES);
+        plain.runUntil(200L * LcdController.FRAME_CYCLES);
+        assertArrayEquals(state(plain), state(profiled));
+    }
+}
@@ -0,0 +1,160 @@
+package ch.epfl.gameboj;
+
+import static ch.epfl.gameboj.GameBoyFixtures.state;
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+class RewindBufferTest {
+
+    private static GameBoy newGameBoy() {
+        try {
+            return new GameBoy(Cartridge
+                    .ofMappedFile(new File("Super Mario Land (JUE) (V1.1) [!].gb")));
+        } catch (IOException e) {
+            throw new Error(e);
+        }
+    }
+
+    @Test
+    void deltaRoundTripsForRandomStates() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int size = rng.nextInt(300);
+            byte[] a = new byte[size], b = new byte[size];
+            rng.nextBytes(b);
+            for (int j = 0; j < size; ++j)
+                a[j] = rng.nextInt(3) == 0 ? (byte) rng.nextInt() : b[j];
+
+            byte[] out = new byte[RewindBuffer.maxDeltaSize(size)];
+            int length = RewindBuffer.encodeDelta(a, b, out);
+            byte[] restored = b.clone();
+            RewindBuffer.applyDelta(Arrays.copyOf(out, length), restored);
+            assertArrayEquals(a, restored);
+        }
+    }
+
+    @Test
+    void deltaOfIdenticalStatesIsTiny() {
+        byte[] a = new byte[100_000];
+        byte[] out = new byte[RewindBuffer.maxDeltaSize(a.length)];
+        assertTrue(RewindBuffer.encodeDelta(a, a.clone(), out) <= 4);
+    }
+
+    @Test
+    void rewindRestoresStatesInReverseOrder() {
+        GameBoy gb = newGameBoy();
+        RewindBuffer r = new RewindBuffer(gb, 10, Long.MAX_VALUE);
+        List<byte[]> states = new ArrayList<>();
+
+        for (int frame = 1; frame <= 200; ++frame) {
+            gb.runUntil(frame * (long) LcdController.FRAME_CYCLES);
+            if (r.record())
+                states.add(state(gb));
+        }
+        assertEquals(20, states.size());
+        assertEquals(20, r.size());
+
+        for (int i = states.size() - 1; i >= 0; --i) {
+            assertTrue(r.rewind());
+            assertArrayEquals(states.get(i), state(gb));
+        }
+        assertFalse(r.rewind());
+        assertArrayEquals(states.get(0), state(gb));
+        assertEquals(1, r.size());
+        assertEquals(0, r.deltaBytes());
+    }
+
+    @Test
+    void budgetEvictsOldestStates() {
+        GameBoy gb = newGameBoy();
+        RewindBuffer r = new RewindBuffer(gb, 1, 20_000);
+        List<byte[]> states = new ArrayList<>();
+
+        for (int frame = 1; frame <= 300; ++frame) {
+            gb.runUntil(frame * (long) LcdController.FRAME_CYCLES);
+            r.snapshot();
+            states.add(state(gb));
+            assertTrue(r.deltaBytes() <= 20_000);
+        }
+        int kept = r.size();
+        assertTrue(kept > 1 && kept < states.size());
+
+        // Le Game Boy est déjà dans l'état le plus récent, le premier retour
+        // en arrière rétablit donc le précédent
+        for (int i = 1; i < kept; ++i) {
+            assertTrue(r.rewind());
+            assertArrayEquals(states.get(states.size() - 1 - i), state(gb));
+        }
+        assertFalse(r.rewind());
+    }
+
+    @Test
+    void recordingResumesAfterRewindWithoutLosingRestoredState() {
+        GameBoy gb = newGameBoy();
+        RewindBuffer r = new RewindBuffer(gb, 5, Long.MAX_VALUE);
+        List<byte[]> states = new ArrayList<>();
+        for (int frame = 1; frame <= 48; ++frame) {
+            gb.runUntil(frame * (long) LcdController.FRAME_CYCLES);
+            if (r.record())
+                states.add(state(gb));
+        }
+        byte[] last = states.get(states.size() - 1);
+        byte[] previous = states.get(states.size() - 2);
+
+        assertTrue(r.rewind());
+        assertArrayEquals(last, state(gb));
+
+        gb.runUntil(gb.cycles() + 5L * LcdController.FRAME_CYCLES);
+        assertTrue(r.record());
+        assertEquals(states.size() + 1, r.size());
+
+        assertTrue(r.rewind());
+        assertArrayEquals(last, state(gb));
+        assertTrue(r.rewind());
+        assertArrayEquals(previous, state(gb));
+    }
+
+    @Test
+    void consecutiveRewindsStepBackEvenIfFramesAreSimulatedInBetween() {
+        GameBoy gb = newGameBoy();
+        RewindBuffer r = new RewindBuffer(gb, 5, Long.MAX_VALUE);
+        List<byte[]> states = new ArrayList<>();
+        for (int frame = 1; frame <= 48; ++frame) {
+            gb.runUntil(frame * (long) LcdController.FRAME_CYCLES);
+            if (r.record())
+                states.add(state(gb));
+        }
+
+        for (int i = states.size() - 1; i >= states.size() - 4; --i) {
+            assertTrue(r.rewind());
+            assertArrayEquals(states.get(i), state(gb));
+            gb.runUntil(gb.cycles() + LcdController.FRAME_CYCLES);
+        }
+    }
+
+    @Test
+    void constructorFailsForInvalidArguments() {
+        GameBoy gb = newGameBoy();
+        assertThrows(IllegalArgumentException.class,
+                () -> new RewindBuffer(gb, 0, 100));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RewindBuffer(gb, 1, -1));
+    }
+}
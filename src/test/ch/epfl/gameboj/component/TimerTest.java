@@ -0,0 +1,75 @@
+package ch.epfl.gameboj.component;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.cpu.Cpu;
+
+class TimerTest implements ComponentTest {
+    @Override
+    public Component newComponent() {
+        return new Timer(new Cpu());
+    }
+
+    private static Timer newTimer(Cpu cpu, int tac, int tma, int tima) {
+        Timer t = new Timer(cpu);
+        t.write(AddressMap.REG_TAC, tac);
+        t.write(AddressMap.REG_TMA, tma);
+        t.write(AddressMap.REG_TIMA, tima);
+        return t;
+    }
+
+    @Test
+    void skippingCyclesMatchesCycleByCycleSimulation() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int tac = 0b100 | rng.nextInt(4);
+            int tma = rng.nextInt(0x100), tima = rng.nextInt(0x100);
+            Cpu cpu1 = new Cpu(), cpu2 = new Cpu();
+            Timer t1 = newTimer(cpu1, tac, tma, tima);
+            Timer t2 = newTimer(cpu2, tac, tma, tima);
+
+            long c = 0;
+            for (int e = 0; e < 20; ++e) {
+                long next = Math.min(t2.nextEventCycle(c), c + 1 + rng.nextInt(5000));
+                for (; c < next; ++c)
+                    t1.cycle(c);
+                t2.cycle(c);
+                t1.cycle(c);
+                ++c;
+                for (int r = AddressMap.REG_DIV; r <= AddressMap.REG_TAC; ++r)
+                    assertEquals(t1.read(r), t2.read(r));
+                assertEquals(cpu1.read(AddressMap.REG_IF), cpu2.read(AddressMap.REG_IF));
+                cpu1.write(AddressMap.REG_IF, 0);
+                cpu2.write(AddressMap.REG_IF, 0);
+            }
+        }
+    }
+
+    @Test
+    void nextEventCycleIsTheOverflowCycle() {
+        Cpu cpu = new Cpu();
+        Timer t = newTimer(cpu, 0b101, 0, 0xFE);
+        t.cycle(0);
+        long overflow = t.nextEventCycle(0);
+        for (long c = 1; c < overflow; ++c) {
+            t.cycle(c);
+            assertEquals(0, cpu.read(AddressMap.REG_IF));
+        }
+        t.cycle(overflow);
+        assertEquals(1 << Cpu.Interrupt.TIMER.index(), cpu.read(AddressMap.REG_IF));
+    }
+
+    @Test
+    void disabledTimerHasNoEvent() {
+        Timer t = newTimer(new Cpu(), 0b011, 0, 0xFF);
+        t.cycle(0);
+        assertEquals(Long.MAX_VALUE, t.nextEventCycle(0));
+    }
+}
@@ -0,0 +1,92 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.memory.Rom;
+
+class CartridgeTest {
+
+    private static final int BANK_SIZE = 0x4000;
+
+    // Mémoire morte d'une cartouche MBC1 de 4 banques, avec 8 Kio de mémoire
+    // vive, dont chaque banque est remplie de son numéro
+    private static byte[] mbc1Data() {
+        byte[] data = new byte[4 * BANK_SIZE];
+        for (int bank = 0; bank < 4; ++bank)
+            Arrays.fill(data, bank * BANK_SIZE, (bank + 1) * BANK_SIZE,
+                    (byte) bank);
+        data[0x147] = 1;
+        data[0x149] = 2;
+        return data;
+    }
+
+    @Test
+    void cartridgesSharingRomHaveIndependentState() {
+        Rom rom = new Rom(mbc1Data());
+        Cartridge c1 = Cartridge.ofRom(rom), c2 = Cartridge.ofRom(rom);
+
+        c1.write(0x2000, 3);
+        assertEquals(3, c1.read(0x4000));
+        assertEquals(1, c2.read(0x4000));
+
+        c1.write(0x0000, 0xA);
+        c2.write(0x0000, 0xA);
+        c1.write(0xA000, 0x12);
+        c2.write(0xA000, 0x34);
+        assertEquals(0x12, c1.read(0xA000));
+        assertEquals(0x34, c2.read(0xA000));
+    }
+
+    @Test
+    void ofBytesAndOfRomAreEquivalent() {
+        byte[] data = mbc1Data();
+        Cartridge c1 = Cartridge.ofBytes(data);
+        Cartridge c2 = Cartridge.ofRom(new Rom(data));
+        for (int a = 0; a < 0x8000; a += 0x100)
+            assertEquals(c1.read(a), c2.read(a));
+    }
+
+    @Test
+    void ofRomFailsForInvalidType() {
+        byte[] data = mbc1Data();
+        data[0x147] = 4;
+        assertThrows(IllegalArgumentException.class,
+                () -> Cartridge.ofRom(new Rom(data)));
+        assertThrows(IllegalArgumentException.class,
+                () -> Cartridge.ofRom(new Rom(new byte[0x100])));
+    }
+
+    @Test
+    void checkRomAcceptsExactlyTheRomsOfRomAccepts() {
+        Rom rom = new Rom(mbc1Data());
+        assertSame(rom, Cartridge.checkRom(rom));
+        byte[] data = mbc1Data();
+        data[0x147] = 4;
+        assertThrows(IllegalArgumentException.class,
+                () -> Cartridge.checkRom(new Rom(data)));
+        assertThrows(IllegalArgumentException.class,
+                () -> Cartridge.checkRom(new Rom(new byte[0x100])));
+    }
+
+    @Test
+    void romBankFollowsBankRegisters() {
+        Cartridge c = Cartridge.ofBytes(mbc1Data());
+        assertEquals(0, c.romBank(0x0000));
+        assertEquals(1, c.romBank(0x4000));
+
+        c.write(0x2000, 3);
+        for (int a = 0x4000; a < 0x8000; a += 0x100)
+            assertEquals(c.read(a), c.romBank(a));
+        assertEquals(0, c.romBank(0x3FFF));
+
+        byte[] data = new byte[2 * BANK_SIZE];
+        assertEquals(1, Cartridge.ofBytes(data).romBank(0x7FFF));
+        assertThrows(IllegalArgumentException.class, () -> c.romBank(0x8000));
+    }
+}
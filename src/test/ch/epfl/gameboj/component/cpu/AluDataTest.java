@@ -0,0 +1,137 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+
+/**
+ * Compare les méthodes de l'ALU, et leur chemin rapide utilisé par le
+ * processeur, aux résultats de référence de src/test/data, qui contiennent
+ * tous les paquets valeur/fanions attendus, l'argument de droite variant le
+ * plus vite
+ */
+class AluDataTest {
+
+    private static int[] readData(String name) throws IOException {
+        int[] data = new int[0x20000];
+        int size = 0;
+        try (DataInputStream s = new DataInputStream(new GZIPInputStream(
+                new FileInputStream("src/test/data/" + name + ".bin.gz")))) {
+            while (true) {
+                int v = s.readInt();
+                if (size == data.length)
+                    data = Arrays.copyOf(data, 2 * size);
+                data[size++] = v;
+            }
+        } catch (EOFException e) {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    @Test
+    void maskZNHCMatchesReferenceData() throws IOException {
+        int[] expected = readData("MASKZNHC");
+        for (int i = 0; i < 16; ++i)
+            assertEquals(expected[i], Alu.maskZNHC((i & 8) != 0, (i & 4) != 0,
+                    (i & 2) != 0, (i & 1) != 0));
+    }
+
+    @Test
+    void addAndSubMatchReferenceData() throws IOException {
+        int[] add = readData("ADD"), sub = readData("SUB");
+        int i = 0;
+        for (int l = 0; l < 0x100; ++l) {
+            for (int r = 0; r < 0x100; ++r) {
+                for (int c = 0; c < 2; ++c, ++i) {
+                    assertEquals(add[i], Alu.add(l, r, c == 1));
+                    assertEquals(add[i], Alu.fastAdd(l, r, c == 1));
+                    assertEquals(sub[i], Alu.sub(l, r, c == 1));
+                    assertEquals(sub[i], Alu.fastSub(l, r, c == 1));
+                }
+            }
+        }
+        assertEquals(add.length, i);
+    }
+
+    @Test
+    void bitwiseOperationsMatchReferenceData() throws IOException {
+        int[] and = readData("AND"), or = readData("OR"), xor = readData("XOR");
+        int i = 0;
+        for (int l = 0; l < 0x100; ++l) {
+            for (int r = 0; r < 0x100; ++r, ++i) {
+                assertEquals(and[i], Alu.and(l, r));
+                assertEquals(and[i], Alu.fastAnd(l, r));
+                assertEquals(or[i], Alu.or(l, r));
+                assertEquals(or[i], Alu.fastOr(l, r));
+                assertEquals(xor[i], Alu.xor(l, r));
+                assertEquals(xor[i], Alu.fastXor(l, r));
+            }
+        }
+        assertEquals(and.length, i);
+    }
+
+    @Test
+    void shiftsAndSwapMatchReferenceData() throws IOException {
+        int[] shl = readData("SHL"), shrA = readData("SHR_A");
+        int[] shrL = readData("SHR_L"), swap = readData("SWAP");
+        for (int v = 0; v < 0x100; ++v) {
+            assertEquals(shl[v], Alu.shiftLeft(v));
+            assertEquals(shl[v], Alu.fastShiftLeft(v));
+            assertEquals(shrA[v], Alu.shiftRightA(v));
+            assertEquals(shrA[v], Alu.fastShiftRightA(v));
+            assertEquals(shrL[v], Alu.shiftRightL(v));
+            assertEquals(shrL[v], Alu.fastShiftRightL(v));
+            assertEquals(swap[v], Alu.swap(v));
+            assertEquals(swap[v], Alu.fastSwap(v));
+        }
+    }
+
+    @Test
+    void rotationsMatchReferenceData() throws IOException {
+        int[] rot2 = readData("ROT2"), rot3 = readData("ROT3");
+        int i = 0, j = 0;
+        for (RotDir d : RotDir.values()) {
+            for (int v = 0; v < 0x100; ++v, ++i) {
+                assertEquals(rot2[i], Alu.rotate(d, v));
+                assertEquals(rot2[i], Alu.fastRotate(d, v));
+                for (int c = 0; c < 2; ++c, ++j) {
+                    assertEquals(rot3[j], Alu.rotate(d, v, c == 1));
+                    assertEquals(rot3[j], Alu.fastRotate(d, v, c == 1));
+                }
+            }
+        }
+        assertEquals(rot3.length, j);
+    }
+
+    @Test
+    void bcdAdjustMatchesReferenceData() throws IOException {
+        int[] bcda = readData("BCDA");
+        int i = 0;
+        for (int v = 0; v < 0x100; ++v) {
+            for (int f = 0; f < 8; ++f, ++i) {
+                boolean n = (f & 4) != 0, h = (f & 2) != 0, c = (f & 1) != 0;
+                assertEquals(bcda[i], Alu.bcdAdjust(v, n, h, c));
+                assertEquals(bcda[i], Alu.fastBcdAdjust(v, n, h, c));
+            }
+        }
+        assertEquals(bcda.length, i);
+    }
+
+    @Test
+    void testBitMatchesReferenceData() throws IOException {
+        int[] tst = readData("TST");
+        int i = 0;
+        for (int v = 0; v < 0x100; ++v)
+            for (int b = 0; b < 8; ++b, ++i)
+                assertEquals(tst[i], Alu.testBit(v, b));
+    }
+}
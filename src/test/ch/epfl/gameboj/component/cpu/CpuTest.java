@@ -580,6 +580,121 @@ class CpuTest {
         }
     }
 
+    // Stepping
+
+    @Test
+    void stepMatchesCycleByCycleSimulation() throws IOException {
+        try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+            emitN8(s, LD_B_N8, 10);
+            emit(s, DEC_B);
+            emitN8(s, JR_NZ_E8, -3 & 0xFF);
+            emit(s, HALT);
+            for (int budget = 1; budget < 60; ++budget) {
+                Cpu c = newCpu(s);
+                long cycle = 0;
+                while (cycle < 60)
+                    cycle += c.step(cycle, Math.min(budget, 60 - cycle));
+                assertCpuStateEquals(stateAfter(s, 60), c._testGetPcSpAFBCDEHL());
+            }
+        }
+    }
+
+    @Test
+    void stepStopsAfterWriteToIoRegister() throws IOException {
+        try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+            emitN8(s, LD_A_N8, 0x12);
+            emitN8(s, LD_N8R_A, 0x05);
+            emit(s, INC_A);
+            Cpu c = newCpu(s, new RamController(new Ram(0x100), 0xFF00));
+            assertEquals(3, c.step(0, 100));
+            assertCpuStateEquals(cpuState(4, 0, 0x12, 0, 0, 0, 0, 0, 0, 0), c._testGetPcSpAFBCDEHL());
+            assertEquals(2, c.currentCycle());
+        }
+    }
+
+    // Translation
+
+    @Test
+    void translatedCodeMatchesInterpretedCode() throws IOException {
+        try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+            emitN8(s, LD_B_N8, 10);
+            emit(s, DEC_B);
+            emitN8(s, JR_NZ_E8, -3 & 0xFF);
+            emitN16(s, CALL_N16, 0x0010);
+            emit(s, HALT);
+            while (s.size() < 0x10)
+                emit(s, NOP);
+            emitN16(s, LD_HL_N16, 0x1234);
+            s.write(0xCB);
+            s.write(SWAP_H.encoding);
+            emit(s, RET);
+            for (int cycles = 1; cycles < 100; cycles += 7) {
+                Cpu c = newCpu(s);
+                c.setTranslation(a -> 0);
+                long cycle = 0;
+                while (cycle < cycles)
+                    cycle += c.step(cycle, cycles - cycle);
+                assertCpuStateEquals(stateAfter(s, cycles), c._testGetPcSpAFBCDEHL());
+            }
+        }
+    }
+
+    @Test
+    void fusedInstructionsMatchStepping() throws IOException {
+        try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+            emitN8(s, LD_B_N8, 3);
+            emit(s, DEC_B);
+            emitN8(s, JR_NZ_E8, -3 & 0xFF);
+            emitN8(s, LD_A_N8, 0x12);
+            emit(s, INC_A);
+            emitN8(s, LD_N8R_A, 0x05);
+            emit(s, NOP);
+            emit(s, INC_A);
+            emit(s, HALT);
+            for (int budget = 1; budget < 40; ++budget) {
+                Cpu expected = newCpu(s, new RamController(new Ram(0x100), 0xFF00));
+                Cpu actual = newCpu(s, new RamController(new Ram(0x100), 0xFF00));
+                actual.setTranslation(a -> 0);
+                long cycle = 0;
+                while (cycle < 40) {
+                    long b = Math.min(budget, 40 - cycle);
+                    long steps = expected.step(cycle, b);
+                    assertEquals(steps, actual.step(cycle, b));
+                    assertEquals(expected.currentCycle(), actual.currentCycle());
+                    assertCpuStateEquals(expected._testGetPcSpAFBCDEHL(), actual._testGetPcSpAFBCDEHL());
+                    cycle += steps;
+                }
+            }
+        }
+    }
+
+    @Test
+    void translatedRamCodeIsForgottenWhenWritten() throws IOException {
+        byte[] code = {
+                0x06, 0x01,             // C000 LD B, 01
+                0x3E, 0x07,             // C002 LD A, 07
+                (byte) 0xEA, 0x01, (byte) 0xC0, // C004 LD (C001), A
+                (byte) 0xEA, 0x0B, (byte) 0xC0, // C007 LD (C00B), A
+                0x0E, 0x00,             // C00A LD C, 00
+                (byte) 0xC3, 0x00, (byte) 0xC0, // C00C JP C000
+        };
+        try (ByteArrayOutputStream s = new ByteArrayOutputStream()) {
+            emitN16(s, JP_N16, 0xC000);
+            for (int cycles : new int[] { 22, 24, 50 }) {
+                Cpu c = newCpu(s, ramAt(0xC000, code));
+                c.setTranslation(a -> 0);
+                c.step(0, cycles);
+                int[] expected = stateAfter(s, cycles, ramAt(0xC000, code));
+                assertCpuStateEquals(expected, c._testGetPcSpAFBCDEHL());
+                assertEquals(7, expected[5]);
+            }
+            Cpu c = newCpu(s, ramAt(0xC000, code));
+            c.setTranslation(a -> 0);
+            c.step(0, 24);
+            assertEquals(7, c._testGetPcSpAFBCDEHL()[4]);
+        }
+    }
+
     private static int combine(int h, int l) {
         return (h << 8) | l;
     }
@@ -612,7 +727,7 @@ class CpuTest {
         return new RamController(r, startAddress);
     }
 
-    private int[] stateAfter(ByteArrayOutputStream program, int cycles, Component... components) {
+    private Cpu newCpu(ByteArrayOutputStream program, Component... components) {
         Component p = new ProgRom(program.toByteArray());
         Cpu c = new Cpu();
         Bus b = new Bus();
@@ -620,6 +735,11 @@ class CpuTest {
         c.attachTo(b);
         for (Component c2: components)
             c2.attachTo(b);
+        return c;
+    }
+
+    private int[] stateAfter(ByteArrayOutputStream program, int cycles, Component... components) {
+        Cpu c = newCpu(program, components);
         for (int i = 0; i < cycles; ++i) {
             c.cycle(i);
         }
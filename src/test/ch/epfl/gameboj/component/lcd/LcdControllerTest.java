@@ -0,0 +1,157 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.ComponentTest;
+import ch.epfl.gameboj.component.cpu.Cpu;
+
+class LcdControllerTest implements ComponentTest {
+    private static final int FRAME_CYCLES = 17556;
+    private static final int REG_LCDC = AddressMap.REGS_LCDC_START;
+    private static final int REG_STAT = AddressMap.REGS_LCDC_START + 1;
+    private static final int REG_LY = AddressMap.REGS_LCDC_START + 4;
+    private static final int REG_LYC = AddressMap.REGS_LCDC_START + 5;
+    private static final int REG_BGP = AddressMap.REGS_LCDC_START + 7;
+
+    @Override
+    public Component newComponent() {
+        return new LcdController(new Cpu());
+    }
+
+    private static LcdController newLcdController() {
+        LcdController lcd = new LcdController(new Cpu());
+        lcd.attachTo(new Bus());
+        lcd.write(REG_BGP, 0b11_10_01_00);
+        // écran et arrière-plan allumés, tuiles en 0x8000
+        lcd.write(REG_LCDC, 0b1001_0001);
+        return lcd;
+    }
+
+    private static void writeTile0(LcdController lcd, int lsb, int msb) {
+        for (int i = 0; i < 8; ++i) {
+            lcd.write(AddressMap.VIDEO_RAM_START + 2 * i, lsb);
+            lcd.write(AddressMap.VIDEO_RAM_START + 2 * i + 1, msb);
+        }
+    }
+
+    private static long runFrame(LcdController lcd, long start) {
+        for (long c = start; c < start + FRAME_CYCLES; ++c)
+            lcd.cycle(c);
+        return start + FRAME_CYCLES;
+    }
+
+    @Test
+    void backgroundIsDrawnFromTileData() {
+        LcdController lcd = newLcdController();
+        writeTile0(lcd, 0b1010_1010, 0b1100_1100);
+        runFrame(lcd, 0);
+
+        int[] expected = { 3, 2, 1, 0, 3, 2, 1, 0 };
+        for (int x = 0; x < 8; ++x)
+            assertEquals(expected[x], lcd.currentImage().get(x, 0));
+    }
+
+    @Test
+    void writesToTileDataAreVisibleInNextFrame() {
+        LcdController lcd = newLcdController();
+        writeTile0(lcd, 0xFF, 0x00);
+        long c = runFrame(lcd, 0);
+        assertEquals(1, lcd.currentImage().get(0, 0));
+
+        writeTile0(lcd, 0xFF, 0xFF);
+        runFrame(lcd, c);
+        assertEquals(3, lcd.currentImage().get(0, 0));
+        assertEquals(3, lcd.currentImage().get(159, 143));
+    }
+
+    @Test
+    void frameBufferReceivesArgbPixelsOfEachFrame() {
+        LcdController lcd = newLcdController();
+        int[] pixels = new int[LcdController.LCD_WIDTH * LcdController.LCD_HEIGHT];
+        int[] colors = { 0xFFFFFFFF, 0xFFAAAAAA, 0xFF555555, 0xFF000000 };
+        int[] frames = new int[1];
+        lcd.setFrameBuffer(pixels, colors);
+        lcd.setFrameListener(() -> ++frames[0]);
+
+        writeTile0(lcd, 0b1010_1010, 0b1100_1100);
+        long c = runFrame(lcd, 0);
+        assertEquals(1, frames[0]);
+        LcdImage image = lcd.currentImage();
+        for (int y = 0; y < image.height(); ++y)
+            for (int x = 0; x < image.width(); ++x)
+                assertEquals(colors[image.get(x, y)], pixels[y * image.width() + x]);
+
+        lcd.setFrameBuffer(null, colors);
+        writeTile0(lcd, 0, 0);
+        runFrame(lcd, c);
+        assertEquals(2, frames[0]);
+        assertEquals(colors[3], pixels[0]);
+    }
+
+    @Test
+    void setFrameBufferFailsForInvalidSizes() {
+        LcdController lcd = newLcdController();
+        assertThrows(IllegalArgumentException.class,
+                () -> lcd.setFrameBuffer(new int[100], new int[4]));
+        assertThrows(IllegalArgumentException.class,
+                () -> lcd.setFrameBuffer(new int[160 * 144], new int[3]));
+    }
+
+    @Test
+    void skippedFramesKeepTimingAndInterruptsButAreNotDrawn() {
+        Bus[] buses = { new Bus(), new Bus() };
+        LcdController[] lcds = new LcdController[2];
+        for (int i = 0; i < 2; ++i) {
+            Cpu cpu = new Cpu();
+            cpu.attachTo(buses[i]);
+            lcds[i] = new LcdController(cpu);
+            lcds[i].attachTo(buses[i]);
+            lcds[i].write(REG_BGP, 0b11_10_01_00);
+            // interruptions de tous les modes et de LYC
+            lcds[i].write(REG_STAT, 0b0111_1000);
+            lcds[i].write(REG_LYC, 42);
+            lcds[i].write(REG_LCDC, 0b1001_0001);
+            writeTile0(lcds[i], 0xFF, 0x00);
+        }
+        int[] frames = new int[2], vBlanks = new int[2];
+        lcds[0].setFrameListener(() -> ++frames[0]);
+        lcds[1].setFrameListener(() -> ++frames[1]);
+        lcds[0].setVBlankListener(() -> ++vBlanks[0]);
+        lcds[1].setVBlankListener(() -> ++vBlanks[1]);
+        lcds[1].setFrameSkip(() -> frames[1] > 0);
+
+        for (long c = 0; c < 3 * FRAME_CYCLES; ++c) {
+            for (LcdController lcd : lcds)
+                lcd.cycle(c);
+            for (int address : new int[] { REG_STAT, REG_LY, AddressMap.REG_IF })
+                assertEquals(buses[0].read(address), buses[1].read(address));
+            // le Cpu n'exécute rien, les interruptions sont acquittées ici
+            for (Bus bus : buses)
+                bus.write(AddressMap.REG_IF, 0);
+
+            // la première image est dessinée, les suivantes sont sautées
+            if (c == FRAME_CYCLES) {
+                writeTile0(lcds[0], 0xFF, 0xFF);
+                writeTile0(lcds[1], 0xFF, 0xFF);
+            }
+        }
+
+        assertEquals(3, frames[0]);
+        assertEquals(1, frames[1]);
+        assertEquals(3, vBlanks[0]);
+        assertEquals(3, vBlanks[1]);
+        assertEquals(3, lcds[0].currentImage().get(0, 0));
+        assertEquals(1, lcds[1].currentImage().get(0, 0));
+
+        lcds[1].setFrameSkip(null);
+        runFrame(lcds[1], 3 * FRAME_CYCLES);
+        assertEquals(2, frames[1]);
+        assertEquals(3, lcds[1].currentImage().get(0, 0));
+    }
+}
@@ -0,0 +1,41 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LcdImageLineTest {
+
+    private static int color(LcdImageLine l, int x) {
+        return (l.msb().testBit(x) ? 2 : 0) | (l.lsb().testBit(x) ? 1 : 0);
+    }
+
+    private static LcdImageLine randomLine(Random rng, int size) {
+        LcdImageLine.Builder b = new LcdImageLine.Builder(size);
+        for (int i = 0; i < size / Byte.SIZE; ++i)
+            b.setBytes(i, rng.nextInt(0x100), rng.nextInt(0x100));
+        return b.build();
+    }
+
+    @Test
+    void mapColorsAppliesPaletteToEveryPixel() {
+        Random rng = newRandom();
+        for (int palette = 0; palette < 0x100; ++palette) {
+            LcdImageLine l = randomLine(rng, 64);
+            LcdImageLine mapped = l.mapColors(palette);
+            for (int x = 0; x < l.size(); ++x)
+                assertEquals((palette >>> (2 * color(l, x))) & 0b11, color(mapped, x));
+            assertEquals(l.opacity(), mapped.opacity());
+        }
+    }
+
+    @Test
+    void mapColorsWithIdentityPaletteReturnsSameLine() {
+        LcdImageLine l = randomLine(newRandom(), 32);
+        assertSame(l, l.mapColors(0b11_10_01_00));
+    }
+}
@@ -0,0 +1,94 @@
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ScanlineBufferTest {
+
+    private static final int SIZE = 160;
+
+    // Remplit la ligne modifiable et retourne la ligne immuable équivalente
+    private static LcdImageLine randomLine(Random rng, ScanlineBuffer b) {
+        LcdImageLine.Builder lb = new LcdImageLine.Builder(b.size());
+        for (int i = 0; i < b.size() / Byte.SIZE; ++i) {
+            int lsb = rng.nextInt(0x100), msb = rng.nextInt(0x100);
+            lb.setBytes(i, lsb, msb);
+            b.setBytes(i, lsb, msb);
+        }
+        b.computeOpacity();
+        return lb.build();
+    }
+
+    @Test
+    void shiftMatchesLcdImageLine() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            ScanlineBuffer b = new ScanlineBuffer(SIZE);
+            LcdImageLine l = randomLine(rng, b);
+            int dist = rng.nextInt(2 * SIZE + 21) - SIZE - 10;
+            b.shift(dist);
+            assertEquals(l.shift(dist), b.toLcdImageLine());
+        }
+    }
+
+    @Test
+    void extractWrappedMatchesLcdImageLine() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            ScanlineBuffer src = new ScanlineBuffer(256);
+            ScanlineBuffer b = new ScanlineBuffer(SIZE);
+            LcdImageLine l = randomLine(rng, src);
+            int index = rng.nextInt(600) - 300;
+            b.extractWrapped(src, index);
+            assertEquals(l.extractWrapped(index, SIZE), b.toLcdImageLine());
+        }
+    }
+
+    @Test
+    void mapColorsMatchesLcdImageLine() {
+        Random rng = newRandom();
+        for (int palette = 0; palette < 0x100; ++palette) {
+            ScanlineBuffer b = new ScanlineBuffer(SIZE);
+            LcdImageLine l = randomLine(rng, b);
+            b.mapColors(palette);
+            assertEquals(l.mapColors(palette), b.toLcdImageLine());
+        }
+    }
+
+    @Test
+    void joinAndBelowMatchLcdImageLine() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            ScanlineBuffer b1 = new ScanlineBuffer(SIZE), b2 = new ScanlineBuffer(SIZE);
+            LcdImageLine l1 = randomLine(rng, b1), l2 = randomLine(rng, b2);
+
+            int index = rng.nextInt(SIZE + 1);
+            ScanlineBuffer joined = new ScanlineBuffer(SIZE);
+            joined.set(b1);
+            joined.join(b2, index);
+            assertEquals(l1.join(l2, index), joined.toLcdImageLine());
+
+            ScanlineBuffer below = new ScanlineBuffer(SIZE);
+            below.set(b1);
+            below.below(b2);
+            assertEquals(l1.below(l2), below.toLcdImageLine());
+
+            b1.over(b2);
+            assertEquals(l2.below(l1, l1.opacity().or(l2.opacity().not())),
+                    b1.toLcdImageLine());
+        }
+    }
+
+    @Test
+    void clearMakesLineTransparent() {
+        ScanlineBuffer b = new ScanlineBuffer(SIZE);
+        randomLine(newRandom(), b);
+        b.clear();
+        assertEquals(new LcdImageLine(SIZE), b.toLcdImageLine());
+    }
+}
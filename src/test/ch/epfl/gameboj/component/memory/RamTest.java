@@ -85,4 +85,41 @@ class RamTest {
                     () -> ram.write(0, k));
         }
     }
+
+    @Test
+    void copyStateFromSharesContentsButNotWrites() {
+        Random rng = newRandom();
+        int size = 1000;
+        Ram r1 = new Ram(size), r2 = new Ram(size);
+        byte[] expected = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            expected[i] = (byte) rng.nextInt();
+            r1.write(i, Byte.toUnsignedInt(expected[i]));
+        }
+
+        r2.copyStateFrom(r1);
+        for (int i = 0; i < size; ++i)
+            assertEquals(Byte.toUnsignedInt(expected[i]), r2.read(i));
+
+        r2.write(0, 0x12);
+        r1.write(size - 1, 0x34);
+        assertEquals(0x12, r2.read(0));
+        assertEquals(Byte.toUnsignedInt(expected[0]), r1.read(0));
+        assertEquals(0x34, r1.read(size - 1));
+        assertEquals(Byte.toUnsignedInt(expected[size - 1]), r2.read(size - 1));
+    }
+
+    @Test
+    void copyStateFromFailsForDifferentSize() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Ram(10).copyStateFrom(new Ram(11)));
+    }
+
+    @Test
+    void newRamsDoNotShareWrites() {
+        Ram r1 = new Ram(300), r2 = new Ram(300);
+        r1.write(299, 0xFF);
+        assertEquals(0, r2.read(299));
+        assertEquals(0xFF, r1.read(299));
+    }
 }
@@ -7,6 +7,9 @@ import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -55,4 +58,28 @@ class RomTest {
                     () -> rom.read(k));
         }
     }
+
+    @Test
+    void mapFileReadsFileContents() throws IOException {
+        byte[] a = new byte[10_000];
+        newRandom().nextBytes(a);
+        File f = File.createTempFile("rom", ".gb");
+        try {
+            Files.write(f.toPath(), a);
+            Rom r = Rom.mapFile(f);
+            assertEquals(a.length, r.size());
+            for (int j = 0; j < a.length; ++j)
+                assertEquals(Byte.toUnsignedInt(a[j]), r.read(j));
+            assertThrows(IndexOutOfBoundsException.class,
+                    () -> r.read(a.length));
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    void mapFileFailsForMissingFile() {
+        assertThrows(IOException.class,
+                () -> Rom.mapFile(new File("no such rom.gb")));
+    }
 }
@@ -0,0 +1,64 @@
+package ch.epfl.gameboj.gui;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class TripleBufferTest {
+
+    @Test
+    void buffersAreInitiallyFilledAndDistinct() {
+        TripleBuffer b = new TripleBuffer(4, 7);
+        assertArrayEquals(new int[] { 7, 7, 7, 7 }, b.back());
+        assertArrayEquals(new int[] { 7, 7, 7, 7 }, b.front());
+        assertNotSame(b.back(), b.front());
+        assertFalse(b.update());
+    }
+
+    @Test
+    void updateTakesLatestPublishedFrameOnce() {
+        TripleBuffer b = new TripleBuffer(1, 0);
+        b.back()[0] = 1;
+        b.publish();
+        b.back()[0] = 2;
+        b.publish();
+        assertNotSame(b.back(), b.front());
+
+        assertTrue(b.update());
+        assertEquals(2, b.front()[0]);
+        assertFalse(b.update());
+        assertEquals(2, b.front()[0]);
+        assertNotSame(b.back(), b.front());
+    }
+
+    @Test
+    void consumerNeverSeesTornOrOlderFrames() throws InterruptedException {
+        int frames = 200_000;
+        TripleBuffer b = new TripleBuffer(64, 0);
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= frames; ++i) {
+                Arrays.fill(b.back(), i);
+                b.publish();
+            }
+        });
+        producer.start();
+
+        int last = 0;
+        while (last < frames) {
+            if (b.update()) {
+                int[] f = b.front();
+                for (int v : f)
+                    assertEquals(f[0], v);
+                assertTrue(f[0] > last);
+                last = f[0];
+            }
+        }
+        producer.join();
+    }
+}
@@ -0,0 +1,51 @@
+package ch.epfl.gameboj.headless;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.cpu.Cpu;
+
+class InputScriptTest {
+
+    // Les bits (actifs à 1) des touches A, B, SELECT et START pressées
+    private static int buttons(Joypad j) {
+        j.write(AddressMap.REG_P1, 0b0001_0000);
+        return ~j.read(AddressMap.REG_P1) & 0xF;
+    }
+
+    @Test
+    void parseIgnoresCommentsAndBlankLines() {
+        InputScript s = InputScript.parse(
+                List.of("# menu", "", "  10 +START ", "12\t-START"));
+        assertEquals(2, s.size());
+    }
+
+    @Test
+    void applyAppliesEventsOfGivenFrameInOrder() {
+        InputScript s = InputScript.parse(
+                List.of("3 +A", "5 +START", "5 +B", "5 -A", "7 -B"));
+        Joypad j = new Joypad(new Cpu());
+
+        int[] expected = { 0, 0, 0, 0b0001, 0b0001, 0b1010, 0b1010, 0b1000 };
+        for (int frame = 0; frame < expected.length; ++frame) {
+            s.apply(frame, j);
+            assertEquals(expected[frame], buttons(j), "frame " + frame);
+        }
+    }
+
+    @Test
+    void parseFailsOnInvalidLines() {
+        for (String l : List.of("10", "x +A", "10 A", "10 +Z", "-1 +A",
+                "10 +A 3"))
+            assertThrows(IllegalArgumentException.class,
+                    () -> InputScript.parse(List.of(l)), l);
+        assertThrows(IllegalArgumentException.class,
+                () -> InputScript.parse(List.of("10 +A", "9 -A")));
+    }
+}